@@ -0,0 +1,99 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal HTTP CONNECT proxy used for the TLS + proxy combination: WireMock's browser proxy
+ * only tunnels HTTPS by intercepting it with its own CA, which would change what is measured.
+ */
+public final class ConnectTunnelProxy implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    private ConnectTunnelProxy(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    public static ConnectTunnelProxy start() throws IOException {
+        var proxy = new ConnectTunnelProxy(new ServerSocket(0));
+        Thread.ofPlatform().daemon().name("connect-proxy").start(proxy::acceptLoop);
+        return proxy;
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+                Thread.ofVirtual().start(() -> tunnel(client));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void tunnel(Socket client) {
+        try (client) {
+            var requestLine = readHead(client.getInputStream()).lines().findFirst().orElse("");
+            var parts = requestLine.split(" ");
+            if (parts.length < 2 || !"CONNECT".equals(parts[0])) {
+                client.getOutputStream().write("HTTP/1.1 405 Method Not Allowed\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            var authority = parts[1];
+            int colon = authority.lastIndexOf(':');
+            try (var upstream = new Socket(authority.substring(0, colon), Integer.parseInt(authority.substring(colon + 1)))) {
+                upstream.setTcpNoDelay(true);
+                client.getOutputStream().write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                client.getOutputStream().flush();
+                var upload = Thread.ofVirtual().start(() -> pump(client, upstream));
+                pump(upstream, client);
+                upload.join();
+            }
+        } catch (IOException | InterruptedException e) {
+            // tunnel closed by either side
+        }
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        var head = new ByteArrayOutputStream();
+        int matched = 0;
+        int b;
+        while (matched < 4 && (b = in.read()) != -1) {
+            head.write(b);
+            matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+        }
+        return head.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void pump(Socket from, Socket to) {
+        var buffer = new byte[16 * 1024];
+        try {
+            InputStream in = from.getInputStream();
+            OutputStream out = to.getOutputStream();
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                out.flush();
+            }
+            to.shutdownOutput();
+        } catch (IOException e) {
+            // peer went away
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import feign.Request;
+import feign.Response;
+import feign.codec.Decoder;
+import feign.optionals.OptionalDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.openfeign.support.FeignHttpMessageConverters;
+import org.springframework.cloud.openfeign.support.HttpMessageConverterCustomizer;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.converter.HttpMessageConverter;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.RecordProjectionDecoder;
+import tech.elethoughts.courses.cloud.feign.infrastructure.StreamingJacksonDecoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding a {@link Pokemon} from a response body, for each {@code decoder} choice, wrapped in the same
+ * {@code OptionalDecoder}/{@code ResponseEntityDecoder} chain the clients use. No network: the body is in memory.
+ * <p>
+ * {@code payload=small} is the 4-field document the stubs serve; {@code payload=pokeapi} is shaped like a real
+ * PokeAPI answer (a few hundred KB, mostly {@code moves}). Run with {@code -prof gc} for {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DecoderBenchmark {
+
+    @Param({"spring", "streaming", "projection"})
+    public String decoder;
+
+    @Param({"small", "pokeapi"})
+    public String payload;
+
+    private Decoder chain;
+    private byte[] body;
+    private Request request;
+    private Map<String, Collection<String>> headers;
+
+    @Setup
+    public void setUp() throws Exception {
+        var beanFactory = new DefaultListableBeanFactory();
+        ObjectProvider<HttpMessageConverter<?>> converters =
+                beanFactory.getBeanProvider(ResolvableType.forClass(HttpMessageConverter.class));
+        ObjectProvider<HttpMessageConverterCustomizer> customizers =
+                beanFactory.getBeanProvider(HttpMessageConverterCustomizer.class);
+        beanFactory.registerSingleton("feignHttpMessageConverters", new FeignHttpMessageConverters(converters, customizers));
+        var springDecoder = new SpringDecoder(beanFactory.getBeanProvider(FeignHttpMessageConverters.class));
+        Decoder core = switch (decoder) {
+            case "spring" -> springDecoder;
+            case "streaming" -> new StreamingJacksonDecoder(springDecoder);
+            case "projection" -> new RecordProjectionDecoder(new StreamingJacksonDecoder(springDecoder));
+            default -> throw new IllegalArgumentException("Unknown decoder: " + decoder);
+        };
+        chain = new OptionalDecoder(new ResponseEntityDecoder(core));
+
+        body = switch (payload) {
+            case "small" -> StubServer.POKEMON_JSON.getBytes(StandardCharsets.UTF_8);
+            case "pokeapi" -> pokeApiDocument().getBytes(StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("Unknown payload: " + payload);
+        };
+        request = Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/pikachu",
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        headers = Map.of("Content-Type", List.of("application/json; charset=utf-8"));
+
+        var pokemon = decode();
+        if (pokemon.id() != 25 || pokemon.weight() != 60) {
+            throw new IllegalStateException("Unexpected decode result: " + pokemon);
+        }
+    }
+
+    @Benchmark
+    public Pokemon decode() throws Exception {
+        var response = Response.builder()
+                .status(200)
+                .headers(headers)
+                .body(body)
+                .request(request)
+                .build();
+        return (Pokemon) chain.decode(response, Pokemon.class);
+    }
+
+    // The real pikachu document is ~280 KB, 90% of it in "moves"
+    static String pokeApiDocument() {
+        var json = new StringBuilder(320 * 1024);
+        json.append("{\"abilities\":[");
+        for (int i = 0; i < 2; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"ability\":{\"name\":\"ability-").append(i)
+                    .append("\",\"url\":\"https://pokeapi.co/api/v2/ability/").append(i).append("/\"},")
+                    .append("\"is_hidden\":").append(i == 1).append(",\"slot\":").append(i + 1).append('}');
+        }
+        json.append("],\"base_experience\":112,\"cries\":{\"latest\":\"https://example/25.ogg\",\"legacy\":null},")
+                .append("\"forms\":[{\"name\":\"pikachu\",\"url\":\"https://pokeapi.co/api/v2/pokemon-form/25/\"}],")
+                .append("\"game_indices\":[");
+        for (int i = 0; i < 20; i++) {
+            json.append(i > 0 ? "," : "").append("{\"game_index\":84,\"version\":{\"name\":\"version-").append(i)
+                    .append("\",\"url\":\"https://pokeapi.co/api/v2/version/").append(i).append("/\"}}");
+        }
+        json.append("],\"height\":4,\"held_items\":[],\"id\":25,\"is_default\":true,")
+                .append("\"location_area_encounters\":\"https://pokeapi.co/api/v2/pokemon/25/encounters\",\"moves\":[");
+        for (int move = 0; move < 100; move++) {
+            json.append(move > 0 ? "," : "").append("{\"move\":{\"name\":\"move-").append(move)
+                    .append("\",\"url\":\"https://pokeapi.co/api/v2/move/").append(move).append("/\"},\"version_group_details\":[");
+            for (int group = 0; group < 14; group++) {
+                json.append(group > 0 ? "," : "")
+                        .append("{\"level_learned_at\":").append(group)
+                        .append(",\"move_learn_method\":{\"name\":\"level-up\",\"url\":\"https://pokeapi.co/api/v2/move-learn-method/1/\"},")
+                        .append("\"order\":null,\"version_group\":{\"name\":\"group-").append(group)
+                        .append("\",\"url\":\"https://pokeapi.co/api/v2/version-group/").append(group).append("/\"}}");
+            }
+            json.append("]}");
+        }
+        json.append("],\"name\":\"pikachu\",\"order\":35,\"past_abilities\":[],\"past_types\":[],")
+                .append("\"species\":{\"name\":\"pikachu\",\"url\":\"https://pokeapi.co/api/v2/pokemon-species/25/\"},")
+                .append("\"sprites\":{\"back_default\":\"https://example/back/25.png\",\"front_default\":\"https://example/25.png\",")
+                .append("\"other\":{\"home\":{\"front_default\":\"https://example/home/25.png\",\"front_shiny\":null}}},")
+                .append("\"stats\":[{\"base_stat\":35,\"effort\":0,\"stat\":{\"name\":\"hp\",\"url\":\"https://pokeapi.co/api/v2/stat/1/\"}}],")
+                .append("\"types\":[{\"slot\":1,\"type\":{\"name\":\"electric\",\"url\":\"https://pokeapi.co/api/v2/type/13/\"}}],")
+                .append("\"weight\":60}");
+        return json.toString();
+    }
+}
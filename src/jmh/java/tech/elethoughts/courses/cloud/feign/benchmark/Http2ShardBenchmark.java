@@ -0,0 +1,131 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHttp2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@value #CALLERS} concurrent calls through {@code PokeApiClientHttp2} over HTTPS (HTTP/2), with
+ * {@code http2.shards} JDK clients and so as many connections.
+ * <p>
+ * The upstream answers after {@code latencyMillis}, so a single connection is bounded by the server's
+ * {@code SETTINGS_MAX_CONCURRENT_STREAMS}: the calls beyond it fail and are counted in {@code failed}. The score
+ * (calls/s) should grow with the shard count until every call fits in the streams the connections allow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class Http2ShardBenchmark {
+
+    static final int CALLERS = 512;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"least-in-flight", "round-robin"})
+    public String selection;
+
+    @Param("50")
+    public int latencyMillis;
+
+    private StubServer server;
+    private AnnotationConfigApplicationContext context;
+    private PokeApiClientHttp2 client;
+
+    @Configuration
+    @EnableFeignClients(clients = PokeApiClientHttp2.class)
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class Http2Config {
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            failed = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = StubServer.startHttpsWithLatency(latencyMillis);
+
+        String prefix = "spring.cloud.openfeign.client.config.pokemon-http2.";
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(prefix + "url", server.baseUrl());
+        properties.put(prefix + "logger-level", "none");
+        properties.put(prefix + "tls.enabled", "true");
+        properties.put(prefix + "tls.trust-store", "classpath:wiremock-truststore.p12");
+        properties.put(prefix + "tls.trust-store-password", "changeit");
+        properties.put(prefix + "tls.verify-hostname", "false");
+        properties.put("spring.cloud.openfeign.http2client.shards", String.valueOf(shards));
+        properties.put("spring.cloud.openfeign.http2client.shard-selection", selection);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(Http2Config.class);
+        context.refresh();
+        client = context.getBean(PokeApiClientHttp2.class);
+        client.getByName("pikachu");
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLERS)
+    public void burst(Failures failures) throws Exception {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var calls = new Future<?>[CALLERS];
+            for (int i = 0; i < CALLERS; i++) {
+                calls[i] = executor.submit(() -> client.getByName("pikachu"));
+            }
+            for (var call : calls) {
+                try {
+                    call.get();
+                } catch (Exception e) {
+                    failures.failed++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+
+/**
+ * WireMock running in its own JVM, so that allocation and CPU profiles of the benchmark
+ * JVM only contain the Feign client side of each call.
+ */
+public final class StubServer implements AutoCloseable {
+
+    public static final String POKEMON_JSON = """
+            {"id": 25, "name": "pikachu", "height": 4, "weight": 60}
+            """;
+
+    private final Process process;
+    private final int port;
+    private final int httpsPort;
+
+    private StubServer(Process process, int port, int httpsPort) {
+        this.process = process;
+        this.port = port;
+        this.httpsPort = httpsPort;
+    }
+
+    public static StubServer start(boolean https) throws Exception {
+        return start(https, false, 0);
+    }
+
+    /**
+     * Plain HTTP stub answering after a fixed delay, to make the callers latency-bound.
+     */
+    public static StubServer startWithLatency(int latencyMillis) throws Exception {
+        return start(false, false, latencyMillis);
+    }
+
+    /**
+     * Same, over HTTPS, where the JDK client negotiates HTTP/2.
+     */
+    public static StubServer startHttpsWithLatency(int latencyMillis) throws Exception {
+        return start(true, false, latencyMillis);
+    }
+
+    public static StubServer startProxy() throws Exception {
+        return start(false, true, 0);
+    }
+
+    private static StubServer start(boolean https, boolean browserProxy, int latencyMillis) throws Exception {
+        int port = freePort();
+        int httpsPort = https ? freePort() : -1;
+
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "wiremock.Run",
+                "--port", String.valueOf(port),
+                "--disable-banner",
+                "--no-request-journal",
+                "--async-response-enabled", "true",
+                "--container-threads", "500"));
+        if (https) {
+            command.addAll(List.of(
+                    "--https-port", String.valueOf(httpsPort),
+                    "--https-keystore", resourcePath("wiremock-keystore.p12"),
+                    "--keystore-password", "changeit",
+                    "--key-manager-password", "changeit",
+                    "--keystore-type", "PKCS12"));
+        }
+        if (browserProxy) {
+            command.add("--enable-browser-proxying");
+        }
+
+        var process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        var server = new StubServer(process, port, httpsPort);
+        server.awaitReady();
+        if (!browserProxy) {
+            new WireMock(port).register(get("/api/v2/pokemon/pikachu")
+                    .willReturn(okJson(POKEMON_JSON).withFixedDelay(latencyMillis)));
+        }
+        return server;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public String baseUrl() {
+        return httpsPort > 0 ? "https://localhost:" + httpsPort : "http://localhost:" + port;
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("WireMock exited with code " + process.exitValue());
+            }
+            try (var socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 200);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        close();
+        throw new IllegalStateException("WireMock did not start on port " + port);
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String resourcePath(String name) throws URISyntaxException {
+        return Path.of(StubServer.class.getClassLoader().getResource(name).toURI()).toString();
+    }
+}
@@ -0,0 +1,165 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClient;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientDefault;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHttp2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of one {@code getByName} call through each Feign transport.
+ * <p>
+ * Throughput and sample-time modes give ops/s and the p50/p99 latency percentiles; run with
+ * {@code -prof gc} to get the allocation rate per call ({@code gc.alloc.rate.norm}).
+ * The three methods differ only in the number of concurrent callers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"default", "hc5", "http2"})
+    public String transport;
+
+    @Param({"false", "true"})
+    public boolean tls;
+
+    @Param({"false", "true"})
+    public boolean proxy;
+
+    private StubServer server;
+    private StubServer httpProxy;
+    private ConnectTunnelProxy tunnelProxy;
+    private AnnotationConfigApplicationContext context;
+    private PokeApiClient client;
+
+    @Configuration
+    @EnableFeignClients(clients = PokeApiClientDefault.class)
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class DefaultConfig {
+    }
+
+    @Configuration
+    @EnableFeignClients(clients = PokeApiClientHc5.class)
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class Hc5Config {
+    }
+
+    @Configuration
+    @EnableFeignClients(clients = PokeApiClientHttp2.class)
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class Http2Config {
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = StubServer.start(tls);
+
+        String clientName = switch (transport) {
+            case "default" -> "pokemon-default";
+            case "hc5" -> "pokemon-hc5";
+            case "http2" -> "pokemon-http2";
+            default -> throw new IllegalArgumentException("Unknown transport: " + transport);
+        };
+        String prefix = "spring.cloud.openfeign.client.config." + clientName + ".";
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(prefix + "url", server.baseUrl());
+        properties.put(prefix + "logger-level", "none");
+        properties.put(prefix + "proxy.enabled", String.valueOf(proxy));
+        properties.put(prefix + "tls.enabled", String.valueOf(tls));
+        if (tls) {
+            properties.put(prefix + "tls.trust-store", "classpath:wiremock-truststore.p12");
+            properties.put(prefix + "tls.trust-store-password", "changeit");
+            properties.put(prefix + "tls.verify-hostname", "false");
+        }
+        if (proxy) {
+            int proxyPort;
+            if (tls) {
+                tunnelProxy = ConnectTunnelProxy.start();
+                proxyPort = tunnelProxy.port();
+            } else {
+                httpProxy = StubServer.startProxy();
+                proxyPort = httpProxy.port();
+            }
+            properties.put(prefix + "proxy.host", "localhost");
+            properties.put(prefix + "proxy.port", String.valueOf(proxyPort));
+        }
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.register(switch (transport) {
+            case "default" -> DefaultConfig.class;
+            case "hc5" -> Hc5Config.class;
+            default -> Http2Config.class;
+        });
+        context.refresh();
+
+        client = switch (transport) {
+            case "default" -> context.getBean(PokeApiClientDefault.class);
+            case "hc5" -> context.getBean(PokeApiClientHc5.class);
+            default -> context.getBean(PokeApiClientHttp2.class);
+        };
+        client.getByName("pikachu");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (tunnelProxy != null) {
+            tunnelProxy.close();
+        }
+        if (httpProxy != null) {
+            httpProxy.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Pokemon singleCaller() {
+        return client.getByName("pikachu");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Pokemon eightCallers() {
+        return client.getByName("pikachu");
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Pokemon thirtyTwoCallers() {
+        return client.getByName("pikachu");
+    }
+}
@@ -0,0 +1,147 @@
+package tech.elethoughts.courses.cloud.feign.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import tech.elethoughts.courses.cloud.feign.SpringCloudOpenfeignConfigApplication;
+import tech.elethoughts.courses.cloud.feign.infrastructure.FeignClientDefaultsConfig;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientCustomConfig;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientDefault;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHttp2;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput ceiling of the whole application (Tomcat + controller + blocking Feign call) under
+ * {@value #CALLERS} concurrent requests, with and without {@code spring.threads.virtual.enabled}.
+ * <p>
+ * The upstream answers after {@code latencyMillis}, so the platform-thread run is capped at roughly
+ * {@code server.tomcat.threads.max / latency}; with virtual threads the cap moves to the client pools.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+    static final int CALLERS = 1000;
+
+    private static final List<String> CLIENTS = List.of(
+            "pokemon-default", "pokemon-hc5", "pokemon-http2", "pokemon-hc5-async", "pokemon-custom-config");
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    // No http2: a single HTTP/2 connection from the JDK client fails calls beyond the server's
+    // max concurrent streams ("too many concurrent streams") instead of queueing them.
+    @Param({"default", "hc5"})
+    public String transport;
+
+    @Param("50")
+    public int latencyMillis;
+
+    private StubServer server;
+    private ConfigurableApplicationContext application;
+    private HttpClient httpClient;
+    private HttpRequest request;
+
+    // The application as SpringCloudOpenfeignConfigApplication defines it, minus the test and benchmark
+    // configurations that share its packages on the test classpath.
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EnableFeignClients(defaultConfiguration = FeignClientDefaultsConfig.class,
+            clients = {PokeApiClientDefault.class, PokeApiClientHc5.class, PokeApiClientHttp2.class, PokeApiClientCustomConfig.class})
+    @ComponentScan(basePackageClasses = SpringCloudOpenfeignConfigApplication.class,
+            excludeFilters = {
+                    @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SpringCloudOpenfeignConfigApplication.class),
+                    @ComponentScan.Filter(type = FilterType.REGEX, pattern = {".*Test(\\$.*)?", ".*\\.benchmark\\..*"})})
+    static class Application {
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        server = StubServer.startWithLatency(latencyMillis);
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.cloud.openfeign.httpclient.max-connections=" + CALLERS,
+                "--spring.cloud.openfeign.httpclient.max-connections-per-route=" + CALLERS,
+                "--logging.level.root=WARN",
+                "--logging.level.tech.elethoughts.courses.cloud.feign=WARN"));
+        for (var client : CLIENTS) {
+            var prefix = "--spring.cloud.openfeign.client.config." + client + ".";
+            args.add(prefix + "url=" + server.baseUrl());
+            args.add(prefix + "logger-level=none");
+            args.add(prefix + "proxy.enabled=false");
+            args.add(prefix + "tls.enabled=false");
+            // Every caller asks for the same Pokemon: coalescing would hide the threading model
+            args.add(prefix + "single-flight.enabled=false");
+            // Load is fixed by CALLERS: shedding it would measure the limiter rather than the transport
+            args.add(prefix + "limiter.enabled=false");
+        }
+        application = new SpringApplicationBuilder(Application.class)
+                .run(args.toArray(String[]::new));
+
+        var port = application.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create(
+                "http://localhost:" + port + "/api/" + transport + "/pokemon/pikachu")).build();
+        burst();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        if (application != null) {
+            application.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLERS)
+    public void burst() {
+        var responses = new CompletableFuture<?>[CALLERS];
+        for (int i = 0; i < CALLERS; i++) {
+            responses[i] = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("HTTP " + response.statusCode());
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+}
@@ -3,9 +3,10 @@ package tech.elethoughts.courses.cloud.feign;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import tech.elethoughts.courses.cloud.feign.infrastructure.FeignClientDefaultsConfig;
 
 @SpringBootApplication
-@EnableFeignClients
+@EnableFeignClients(defaultConfiguration = FeignClientDefaultsConfig.class)
 public class SpringCloudOpenfeignConfigApplication {
 
     public static void main(String[] args) {
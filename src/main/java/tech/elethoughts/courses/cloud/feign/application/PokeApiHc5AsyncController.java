@@ -0,0 +1,28 @@
+package tech.elethoughts.courses.cloud.feign.application;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5Async;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/hc5-async/pokemon")
+@ConditionalOnProperty("spring.cloud.openfeign.client.config.pokemon-hc5-async.url")
+public class PokeApiHc5AsyncController {
+
+    private final PokeApiClientHc5Async client;
+
+    public PokeApiHc5AsyncController(PokeApiClientHc5Async client) {
+        this.client = client;
+    }
+
+    @GetMapping("/{name}")
+    public CompletableFuture<Pokemon> getByName(@PathVariable String name) {
+        return client.getByNameAsync(name);
+    }
+}
@@ -1,24 +1,37 @@
 package tech.elethoughts.courses.cloud.feign.application;
 
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
 import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHttp2;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/http2/pokemon")
 public class PokeApiHttp2Controller {
 
     private final PokeApiClientHttp2 client;
+    private final PokemonStreamer streamer;
 
-    public PokeApiHttp2Controller(PokeApiClientHttp2 client) {
+    public PokeApiHttp2Controller(PokeApiClientHttp2 client, PokemonStreamer streamer) {
         this.client = client;
+        this.streamer = streamer;
     }
 
     @GetMapping("/{name}")
     public Pokemon getByName(@PathVariable String name) {
         return client.getByName(name);
     }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamByNames(@RequestParam List<String> names) {
+        return streamer.stream(client, names);
+    }
 }
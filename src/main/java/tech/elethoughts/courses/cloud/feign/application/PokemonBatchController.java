@@ -0,0 +1,66 @@
+package tech.elethoughts.courses.cloud.feign.application;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClient;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientDefault;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5Async;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHttp2;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches many Pokemon in one request: {@code POST /api/{transport}/pokemon:batch} with a JSON array of names,
+ * streamed back by {@link PokemonStreamer}.
+ */
+@RestController
+public class PokemonBatchController {
+
+    private final Map<String, PokeApiClient> clients;
+    private final PokemonStreamer streamer;
+
+    public PokemonBatchController(PokeApiClientDefault defaultClient,
+                                  PokeApiClientHc5 hc5Client,
+                                  PokeApiClientHttp2 http2Client,
+                                  ObjectProvider<PokeApiClientHc5Async> hc5AsyncClient,
+                                  PokemonStreamer streamer) {
+        this(clients(defaultClient, hc5Client, http2Client, hc5AsyncClient.getIfAvailable()), streamer);
+    }
+
+    PokemonBatchController(Map<String, PokeApiClient> clients, PokemonStreamer streamer) {
+        this.clients = clients;
+        this.streamer = streamer;
+    }
+
+    private static Map<String, PokeApiClient> clients(PokeApiClient defaultClient, PokeApiClient hc5Client,
+                                                      PokeApiClient http2Client, PokeApiClient hc5AsyncClient) {
+        var clients = new HashMap<String, PokeApiClient>();
+        clients.put("default", defaultClient);
+        clients.put("hc5", hc5Client);
+        clients.put("http2", http2Client);
+        if (hc5AsyncClient != null) {
+            clients.put("hc5-async", hc5AsyncClient);
+        }
+        return clients;
+    }
+
+    @PostMapping("/api/{transport}/pokemon:batch")
+    public ResponseEntity<ResponseBodyEmitter> getByNames(@PathVariable String transport,
+                                                          @RequestBody List<String> names) {
+        var client = clients.get(transport);
+        if (client == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown transport: " + transport);
+        }
+        return streamer.stream(client, names);
+    }
+}
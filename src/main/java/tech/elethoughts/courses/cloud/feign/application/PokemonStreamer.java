@@ -0,0 +1,135 @@
+package tech.elethoughts.courses.cloud.feign.application;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import feign.FeignException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams Pokemon as NDJSON, one {@link Item} per distinct name, written as soon as its call completes.
+ * <p>
+ * Calls run on virtual threads, at most {@code pokemon.batch.max-concurrency} at a time (default a quarter of the
+ * pool's {@code max-connections-per-route}, between 1 and 8; never more than the route), so one batch cannot take
+ * the whole route and memory stays bounded by the concurrency rather than the number of names. A failed name yields an item with an error; the others go on.
+ * The stream is cut after {@code pokemon.batch.timeout} (default 5 minutes) rather than the container's async
+ * timeout.
+ */
+@Component
+public class PokemonStreamer {
+
+    private static final Logger log = LoggerFactory.getLogger(PokemonStreamer.class);
+
+    private final int maxConcurrency;
+    private final int maxNames;
+    private final Duration timeout;
+
+    public PokemonStreamer(@Value("${pokemon.batch.max-concurrency:#{null}}") Integer maxConcurrency,
+                           @Value("${spring.cloud.openfeign.httpclient.max-connections-per-route:50}") int maxConnectionsPerRoute,
+                           @Value("${pokemon.batch.max-names:1000}") int maxNames,
+                           @Value("${pokemon.batch.timeout:5m}") Duration timeout) {
+        this.maxConcurrency = maxConcurrency(maxConcurrency, maxConnectionsPerRoute);
+        this.maxNames = maxNames;
+        this.timeout = timeout;
+    }
+
+    static int maxConcurrency(Integer configured, int maxConnectionsPerRoute) {
+        int perRoute = Math.max(1, maxConnectionsPerRoute);
+        if (configured == null) {
+            return Math.clamp(perRoute / 4, 1, 8);
+        }
+        return Math.clamp(configured, 1, perRoute);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(String name, Pokemon pokemon, Error error) {
+
+        public record Error(Integer status, String message) {
+        }
+    }
+
+    public ResponseEntity<ResponseBodyEmitter> stream(PokeApiClient client, Collection<String> names) {
+        var distinctNames = new LinkedHashSet<>(names);
+        if (distinctNames.size() > maxNames) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxNames + " names per request");
+        }
+
+        var emitter = new ResponseBodyEmitter(timeout.toMillis());
+        var cancelled = new AtomicBoolean();
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(e -> cancelled.set(true));
+        Thread.ofVirtual().name("pokemon-stream").start(() -> fanOut(client, distinctNames, emitter, cancelled));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    private void fanOut(PokeApiClient client, Set<String> names, ResponseBodyEmitter emitter, AtomicBoolean cancelled) {
+        var permits = new Semaphore(maxConcurrency);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var name : names) {
+                permits.acquire();
+                if (cancelled.get()) {
+                    permits.release();
+                    break;
+                }
+                executor.submit(() -> {
+                    try {
+                        send(emitter, fetch(client, name), cancelled);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+        }
+        if (cancelled.get()) {
+            emitter.completeWithError(new IllegalStateException("Stream cancelled"));
+        } else {
+            emitter.complete();
+        }
+    }
+
+    private static Item fetch(PokeApiClient client, String name) {
+        try {
+            return new Item(name, client.getByName(name), null);
+        } catch (FeignException e) {
+            return new Item(name, null, new Item.Error(e.status() > 0 ? e.status() : null, e.getMessage()));
+        } catch (RuntimeException e) {
+            return new Item(name, null, new Item.Error(null, e.getMessage()));
+        }
+    }
+
+    // One JSON document per line, flushed right away; the emitter serializes concurrent sends
+    private static void send(ResponseBodyEmitter emitter, Item item, AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            return;
+        }
+        try {
+            emitter.send(new LinkedHashSet<>(List.of(
+                    new ResponseBodyEmitter.DataWithMediaType(item, MediaType.APPLICATION_JSON),
+                    new ResponseBodyEmitter.DataWithMediaType("\n", MediaType.TEXT_PLAIN))));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Stream client went away, dropping remaining items: {}", e.getMessage());
+            cancelled.set(true);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the requests in flight at a limit derived from observed latency, and sheds the excess right away with
+ * {@link ConcurrencyLimitExceededException} instead of queueing it for a pooled connection.
+ * <p>
+ * The limit follows a gradient: every response compares its latency to a long-term average (about
+ * {@code limiter.long-window} samples). While latency stays within {@code limiter.rtt-tolerance} times the average
+ * the limit grows by about its square root, the queue it allows; when latency rises the limit shrinks in
+ * proportion, down to half per sample. Changes are smoothed by {@code limiter.smoothing} and kept within
+ * {@code limiter.min-limit}/{@code limiter.max-limit}. An {@link IOException} (timeout, reset) cuts the limit by
+ * 10%. The limit only grows while at least half of it is used, so an idle client doesn't drift to the maximum.
+ * <p>
+ * Latency is measured until the response headers are back; the body is read afterwards, outside the limit.
+ */
+public class AdaptiveConcurrencyLimitClient implements DelegatingClient {
+
+    private static final double DROP_DECREASE = 0.9;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final Client delegate;
+    private final String clientName;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final int longWindow;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile int limit;
+
+    // Guarded by lock; updates that find it taken skip their sample rather than wait
+    private final ReentrantLock lock = new ReentrantLock();
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimitClient(Client delegate, FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.clientName = properties.getClientName();
+        this.minLimit = properties.getInt("limiter.min-limit", 5);
+        this.maxLimit = properties.getInt("limiter.max-limit", 200);
+        this.smoothing = Double.parseDouble(properties.getString("limiter.smoothing", "0.2"));
+        this.rttTolerance = Double.parseDouble(properties.getString("limiter.rtt-tolerance", "1.5"));
+        this.longWindow = properties.getInt("limiter.long-window", 600);
+        this.estimatedLimit = Math.clamp(properties.getInt("limiter.initial-limit", 20), minLimit, maxLimit);
+        this.limit = (int) estimatedLimit;
+
+        this.rejected = Counter.builder("feign.client.concurrency.rejected")
+                .description("Requests shed because the concurrency limit was reached")
+                .tag("client", clientName)
+                .register(meterRegistry);
+        Gauge.builder("feign.client.concurrency.limit", this, AdaptiveConcurrencyLimitClient::limit)
+                .description("Current adaptive concurrency limit")
+                .tag("client", clientName)
+                .register(meterRegistry);
+        Gauge.builder("feign.client.concurrency.in-flight", this, AdaptiveConcurrencyLimitClient::inFlight)
+                .description("Requests currently in flight")
+                .tag("client", clientName)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Client delegate() {
+        return delegate;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        int inFlightAtStart = tryAcquire();
+        if (inFlightAtStart < 0) {
+            rejected.increment();
+            throw new ConcurrencyLimitExceededException(clientName, limit);
+        }
+        try {
+            long start = System.nanoTime();
+            var response = delegate.execute(request, options);
+            onSample(System.nanoTime() - start, inFlightAtStart);
+            return response;
+        } catch (IOException e) {
+            onDrop();
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // In-flight count including this request, or -1 if the limit is reached
+    private int tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return -1;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return current + 1;
+    }
+
+    void onSample(long rttNanos, int inFlightAtStart) {
+        if (rttNanos <= 0 || !lock.tryLock()) {
+            return;
+        }
+        try {
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / longWindow;
+            // After a long slow period the average lags behind: let it catch up once latency recovers
+            if (longRttNanos / rttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+            if (inFlightAtStart < estimatedLimit / 2) {
+                return;
+            }
+            double gradient = Math.clamp(rttTolerance * longRttNanos / rttNanos, MIN_GRADIENT, 1.0);
+            double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            update(estimatedLimit * (1 - smoothing) + target * smoothing);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onDrop() {
+        lock.lock();
+        try {
+            update(estimatedLimit * DROP_DECREASE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = Math.clamp(newLimit, minLimit, maxLimit);
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,145 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.RetryableException;
+import feign.Retryer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retryer with jittered exponential back-off, {@code Retry-After} support and a {@link RetryBudget} shared by
+ * all calls of the client.
+ * <p>
+ * Feign clones the retryer for every call: the clone carries the attempt count and previous back-off, everything
+ * else (settings, budget, meters) is shared. A retry happens only if attempts remain, the budget has a token and
+ * the server's {@code Retry-After} is within {@code retry.max-retry-after}; the wait is the jittered back-off, or
+ * the {@code Retry-After} delay if longer. With {@code retry.jitter: full} the back-off is uniform in
+ * {@code [0, min(max-backoff, initial-backoff * 2^(attempt-1))]}; with {@code decorrelated} it is uniform in
+ * {@code [initial-backoff, 3 * previous]}, capped at {@code max-backoff}.
+ */
+public class BudgetedRetryer implements Retryer {
+
+    public enum Jitter { FULL, DECORRELATED }
+
+    private final Shared shared;
+    private int attempt = 1;
+    private long previousBackoffNanos;
+
+    public BudgetedRetryer(FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this(new Shared(properties, meterRegistry));
+    }
+
+    private BudgetedRetryer(Shared shared) {
+        this.shared = shared;
+        this.previousBackoffNanos = shared.initialBackoffNanos;
+    }
+
+    private static final class Shared {
+
+        final int maxAttempts;
+        final long initialBackoffNanos;
+        final long maxBackoffNanos;
+        final long maxRetryAfterNanos;
+        final Jitter jitter;
+        final RetryBudget budget;
+        final Counter retried;
+        final Counter exhausted;
+        final Counter budgetExhausted;
+        final Counter retryAfterTooLong;
+        final Timer backoff;
+
+        Shared(FeignClientProperties properties, MeterRegistry meterRegistry) {
+            this.maxAttempts = properties.getInt("retry.max-attempts", 3);
+            this.initialBackoffNanos = properties.getDuration("retry.initial-backoff", Duration.ofMillis(100)).toNanos();
+            this.maxBackoffNanos = properties.getDuration("retry.max-backoff", Duration.ofSeconds(1)).toNanos();
+            this.maxRetryAfterNanos = properties.getDuration("retry.max-retry-after", Duration.ofSeconds(10)).toNanos();
+            this.jitter = Jitter.valueOf(properties.getString("retry.jitter", "full").toUpperCase(Locale.ROOT));
+            this.budget = new RetryBudget(Double.parseDouble(properties.getString("retry.budget.ratio", "0.1")),
+                    properties.getInt("retry.budget.max-tokens", 10));
+
+            var client = properties.getClientName();
+            this.retried = attempts(meterRegistry, client, "retried");
+            this.exhausted = attempts(meterRegistry, client, "attempts_exhausted");
+            this.budgetExhausted = attempts(meterRegistry, client, "budget_exhausted");
+            this.retryAfterTooLong = attempts(meterRegistry, client, "retry_after_too_long");
+            this.backoff = Timer.builder("feign.client.retry.backoff")
+                    .description("Time spent waiting before retries")
+                    .tag("client", client)
+                    .register(meterRegistry);
+            Gauge.builder("feign.client.retry.budget.tokens", budget, RetryBudget::tokens)
+                    .description("Retries the budget currently allows")
+                    .tag("client", client)
+                    .register(meterRegistry);
+        }
+
+        private static Counter attempts(MeterRegistry meterRegistry, String client, String outcome) {
+            return Counter.builder("feign.client.retry.attempts")
+                    .description("Failed attempts that could be retried, by what the retryer did")
+                    .tag("client", client)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        if (attempt >= shared.maxAttempts) {
+            shared.exhausted.increment();
+            throw e;
+        }
+        long retryAfterNanos = retryAfterNanos(e);
+        if (retryAfterNanos > shared.maxRetryAfterNanos) {
+            shared.retryAfterTooLong.increment();
+            throw e;
+        }
+        if (!shared.budget.tryAcquireRetry()) {
+            shared.budgetExhausted.increment();
+            throw e;
+        }
+        long waitNanos = Math.max(retryAfterNanos, nextBackoffNanos());
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        shared.backoff.record(waitNanos, TimeUnit.NANOSECONDS);
+        shared.retried.increment();
+        attempt++;
+    }
+
+    private long nextBackoffNanos() {
+        var random = ThreadLocalRandom.current();
+        long backoff = switch (shared.jitter) {
+            case FULL -> {
+                long ceiling = Math.min(shared.maxBackoffNanos, shared.initialBackoffNanos << Math.min(attempt - 1, 30));
+                yield random.nextLong(ceiling + 1);
+            }
+            case DECORRELATED -> Math.min(shared.maxBackoffNanos,
+                    random.nextLong(shared.initialBackoffNanos, Math.max(shared.initialBackoffNanos, 3 * previousBackoffNanos) + 1));
+        };
+        previousBackoffNanos = backoff;
+        return backoff;
+    }
+
+    private static long retryAfterNanos(RetryableException e) {
+        var retryAfter = e.retryAfter();
+        if (retryAfter == null) {
+            return 0;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryAfter - System.currentTimeMillis()));
+    }
+
+    // Called by Feign at the start of every call: counts the call for the budget
+    @Override
+    public Retryer clone() {
+        shared.budget.onCall();
+        return new BudgetedRetryer(shared);
+    }
+}
@@ -0,0 +1,365 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Private HTTP cache for GET responses, in front of any Feign transport.
+ * <p>
+ * Freshness comes from {@code Cache-Control: max-age} or {@code Expires}, else from {@code cache.ttl}.
+ * Stale entries with an {@code ETag} or {@code Last-Modified} are kept for {@code cache.retention} and
+ * revalidated with {@code If-None-Match}/{@code If-Modified-Since}: a 304 refreshes them without a body
+ * transfer. Entries are weighed by their body, headers and URL, bounded in total by {@code cache.max-bytes} and
+ * evicted with Caffeine's W-TinyLFU policy.
+ * <p>
+ * The cache is shared by every caller of the client, so it follows the rules of a shared cache: an entry is keyed by
+ * the URL and the values of the request headers its response lists in {@code Vary} ({@code Vary: *} is not stored),
+ * {@code private} responses are not stored, and neither are responses to requests carrying {@code Authorization}
+ * unless they are marked {@code public} or {@code s-maxage}.
+ */
+public class CachingClient implements DelegatingClient {
+
+    private static final String CACHE_CONTROL = "Cache-Control";
+
+    private final Client delegate;
+    private final Cache<Key, Entry> cache;
+    private final Cache<String, List<String>> varyByUrl;
+    private final long defaultTtlNanos;
+    private final long retentionNanos;
+    private final int maxEntryBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidations;
+
+    public CachingClient(Client delegate, FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.defaultTtlNanos = properties.getDuration("cache.ttl", Duration.ZERO).toNanos();
+        this.retentionNanos = properties.getDuration("cache.retention", Duration.ofHours(1)).toNanos();
+        this.maxEntryBytes = properties.getInt("cache.max-entry-bytes", 1024 * 1024);
+        long maxBytes = properties.getDataSize("cache.max-bytes", DataSize.ofMegabytes(64)).toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(CachingClient::weight)
+                .expireAfter(new EntryExpiry())
+                .recordStats()
+                .build();
+        // Only URLs and header names: a small share of the budget
+        this.varyByUrl = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxBytes / 16))
+                .weigher((String url, List<String> names) -> clamp(url.length() + length(names)))
+                .build();
+
+        var client = properties.getClientName();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "feign." + client, "client", client);
+        this.hits = requests(meterRegistry, client, "hit");
+        this.misses = requests(meterRegistry, client, "miss");
+        this.revalidations = requests(meterRegistry, client, "revalidated");
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String client, String result) {
+        return Counter.builder("feign.client.cache.requests")
+                .description("GET requests seen by the response cache")
+                .tag("client", client)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param vary {@code name=value} of each request header named in the response's {@code Vary}
+     */
+    private record Key(String url, List<String> vary) {
+    }
+
+    private static Key key(Request request, List<String> varyNames) {
+        var vary = new ArrayList<String>(varyNames.size());
+        for (var name : varyNames) {
+            vary.add(name + "=" + header(request.headers(), name));
+        }
+        return new Key(request.url(), vary);
+    }
+
+    private static List<String> varyNames(Map<String, Collection<String>> responseHeaders) {
+        var value = header(responseHeaders, "Vary");
+        if (value == null) {
+            return List.of();
+        }
+        var names = new ArrayList<String>();
+        for (var name : value.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    // Roughly what an entry keeps on the heap, give or take object headers
+    private static int weight(Key key, Entry entry) {
+        long weight = key.url().length() + length(key.vary()) + entry.body().length;
+        for (var header : entry.headers().entrySet()) {
+            weight += header.getKey().length() + length(header.getValue());
+        }
+        return clamp(weight);
+    }
+
+    private static long length(Collection<String> values) {
+        long length = 0;
+        for (var value : values) {
+            length += value.length();
+        }
+        return length;
+    }
+
+    private static int clamp(long weight) {
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Client delegate() {
+        return delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        if (request.httpMethod() != Request.HttpMethod.GET) {
+            return delegate.execute(request, options);
+        }
+        var requestDirectives = Directives.parse(request.headers());
+        if (requestDirectives.noStore()) {
+            return delegate.execute(request, options);
+        }
+
+        var key = key(request, varyByUrl.get(request.url(), _ -> List.of()));
+        var cached = cache.getIfPresent(key);
+        if (cached != null && cached.isFresh(System.nanoTime()) && !requestDirectives.noCache()) {
+            hits.increment();
+            return cached.toResponse(request);
+        }
+
+        var forwarded = cached != null && cached.hasValidator() && !isConditional(request)
+                ? cached.conditional(request)
+                : request;
+        var response = delegate.execute(forwarded, options);
+
+        if (forwarded != request && response.status() == 304) {
+            response.close();
+            var refreshed = cached.revalidated(response.headers(), freshUntil(response.headers()));
+            cache.put(key, refreshed);
+            revalidations.increment();
+            return refreshed.toResponse(request);
+        }
+        misses.increment();
+        return store(request, response);
+    }
+
+    private Response store(Request request, Response response) throws IOException {
+        if (response.status() != 200) {
+            return response;
+        }
+        var directives = Directives.parse(response.headers());
+        if (directives.noStore() || directives.isPrivate()) {
+            return response;
+        }
+        if (header(request.headers(), "Authorization") != null && !directives.isPublic() && directives.sMaxAgeSeconds() < 0) {
+            return response;
+        }
+        var varyNames = varyNames(response.headers());
+        if (varyNames.contains("*")) {
+            return response;
+        }
+        long freshUntil = directives.noCache() ? System.nanoTime() : freshUntil(response.headers());
+        var etag = header(response.headers(), "ETag");
+        var lastModified = header(response.headers(), "Last-Modified");
+        if (freshUntil <= System.nanoTime() && etag == null && lastModified == null) {
+            return response;
+        }
+
+        byte[] body = new byte[0];
+        if (response.body() != null) {
+            var length = response.body().length();
+            if (length != null && length > maxEntryBytes) {
+                return response;
+            }
+            InputStream in = response.body().asInputStream();
+            body = in.readNBytes(maxEntryBytes + 1);
+            if (body.length > maxEntryBytes) {
+                // Too large to keep: hand back what was read followed by the rest of the stream
+                return response.toBuilder()
+                        .body(new SequenceInputStream(new ByteArrayInputStream(body), in), length)
+                        .build();
+            }
+            response.close();
+        }
+
+        var entry = new Entry(response.status(), response.reason(), response.headers(), body,
+                response.protocolVersion(), freshUntil, etag, lastModified);
+        varyByUrl.put(request.url(), varyNames);
+        cache.put(key(request, varyNames), entry);
+        return entry.toResponse(request);
+    }
+
+    private long freshUntil(Map<String, Collection<String>> headers) {
+        var now = System.nanoTime();
+        var maxAge = Directives.parse(headers).maxAgeSeconds();
+        if (maxAge >= 0) {
+            var age = parseLong(header(headers, "Age"));
+            return now + Duration.ofSeconds(Math.max(0, maxAge - age)).toNanos();
+        }
+        var expires = parseDate(header(headers, "Expires"));
+        if (expires != null) {
+            var date = parseDate(header(headers, "Date"));
+            var base = date != null ? date : ZonedDateTime.now();
+            return now + Math.max(0, Duration.between(base, expires).toNanos());
+        }
+        return now + defaultTtlNanos;
+    }
+
+    private static boolean isConditional(Request request) {
+        return header(request.headers(), "If-None-Match") != null || header(request.headers(), "If-Modified-Since") != null;
+    }
+
+    static String header(Map<String, Collection<String>> headers, String name) {
+        for (var header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return String.join(", ", header.getValue());
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static ZonedDateTime parseDate(String value) {
+        try {
+            return value == null ? null : ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    record Directives(boolean noStore, boolean noCache, long maxAgeSeconds, boolean isPublic, boolean isPrivate,
+                      long sMaxAgeSeconds) {
+
+        static Directives parse(Map<String, Collection<String>> headers) {
+            var value = header(headers, CACHE_CONTROL);
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAge = -1;
+            boolean isPublic = false;
+            boolean isPrivate = false;
+            long sMaxAge = -1;
+            if (value != null) {
+                for (var directive : value.split(",")) {
+                    var parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                    switch (parts[0]) {
+                        case "no-store" -> noStore = true;
+                        case "no-cache" -> noCache = true;
+                        case "max-age" -> maxAge = parts.length == 2 ? parseLong(parts[1].replace("\"", "")) : 0;
+                        case "s-maxage" -> sMaxAge = parts.length == 2 ? parseLong(parts[1].replace("\"", "")) : 0;
+                        case "public" -> isPublic = true;
+                        case "private" -> isPrivate = true;
+                        default -> {
+                        }
+                    }
+                }
+            }
+            return new Directives(noStore, noCache, maxAge, isPublic, isPrivate, sMaxAge);
+        }
+    }
+
+    private record Entry(int status, String reason, Map<String, Collection<String>> headers, byte[] body,
+                         Request.ProtocolVersion protocolVersion, long freshUntilNanos, String etag,
+                         String lastModified) {
+
+        boolean isFresh(long now) {
+            return now - freshUntilNanos < 0;
+        }
+
+        boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+
+        Request conditional(Request request) {
+            Map<String, Collection<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(request.headers());
+            if (etag != null) {
+                headers.put("If-None-Match", List.of(etag));
+            }
+            if (lastModified != null) {
+                headers.put("If-Modified-Since", List.of(lastModified));
+            }
+            return Request.create(request.httpMethod(), request.url(), headers, request.body(), request.charset(),
+                    request.requestTemplate());
+        }
+
+        // RFC 9111 4.3.4: the 304 headers replace the stored ones
+        Entry revalidated(Map<String, Collection<String>> notModifiedHeaders, long freshUntil) {
+            Map<String, Collection<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            merged.putAll(headers);
+            merged.putAll(notModifiedHeaders);
+            var newEtag = header(notModifiedHeaders, "ETag");
+            var newLastModified = header(notModifiedHeaders, "Last-Modified");
+            return new Entry(status, reason, merged, body, protocolVersion, freshUntil,
+                    newEtag != null ? newEtag : etag, newLastModified != null ? newLastModified : lastModified);
+        }
+
+        Response toResponse(Request request) {
+            return Response.builder()
+                    .status(status)
+                    .reason(reason)
+                    .headers(headers)
+                    .body(body)
+                    .protocolVersion(protocolVersion)
+                    .request(request)
+                    .build();
+        }
+    }
+
+    // Fresh time, plus the retention window for entries that can be revalidated
+    private final class EntryExpiry implements Expiry<Key, Entry> {
+
+        @Override
+        public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+            return Math.max(0, entry.freshUntilNanos() - currentTime) + (entry.hasValidator() ? retentionNanos : 0);
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
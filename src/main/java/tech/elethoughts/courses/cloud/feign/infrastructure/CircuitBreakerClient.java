@@ -0,0 +1,286 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Fails calls fast while the upstream is failing or slow, instead of letting each one wait for its timeouts.
+ * <p>
+ * While {@link State#CLOSED CLOSED}, the outcome of the last {@code circuit-breaker.sliding-window-size} calls is
+ * kept in a ring buffer. Once {@code circuit-breaker.minimum-number-of-calls} are recorded, a failure rate (I/O
+ * errors and 5xx responses) of at least {@code circuit-breaker.failure-rate-threshold} percent, or a rate of calls
+ * slower than {@code circuit-breaker.slow-call-duration-threshold} of at least
+ * {@code circuit-breaker.slow-call-rate-threshold} percent, opens the circuit. While {@link State#OPEN OPEN}, calls
+ * are rejected with {@link CircuitBreakerOpenException}; after {@code circuit-breaker.wait-duration-in-open-state}
+ * it goes {@link State#HALF_OPEN HALF_OPEN} and lets {@code circuit-breaker.permitted-calls-in-half-open-state}
+ * probes through. Their rates close the circuit again or reopen it.
+ * <p>
+ * State and window are swapped together as one immutable {@link Phase} with compare-and-set; recording an outcome
+ * is a slot swap and one add on the packed totals, no lock and no allocation. Exceptions other than
+ * {@link IOException} (e.g. a {@link ConcurrencyLimitExceededException} from below) are not counted, and give
+ * their half-open probe back.
+ * Every transition is counted, logged and passed to the listener.
+ */
+public class CircuitBreakerClient implements DelegatingClient {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerClient.class);
+    private static final int NOT_RECORDED = -1;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Transition(String clientName, State from, State to) {
+    }
+
+    private record Phase(State state, Window window, long openedAtNanos, AtomicInteger probes) {
+    }
+
+    private final Client delegate;
+    private final String clientName;
+    private final int slidingWindowSize;
+    private final int minimumNumberOfCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long waitInOpenNanos;
+    private final int permittedCallsInHalfOpen;
+    private final Consumer<Transition> listener;
+    private final AtomicReference<Phase> phase;
+    private final MeterRegistry meterRegistry;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter rejections;
+
+    public CircuitBreakerClient(Client delegate, FeignClientProperties properties, MeterRegistry meterRegistry,
+                                Consumer<Transition> listener) {
+        this.delegate = delegate;
+        this.clientName = properties.getClientName();
+        this.slidingWindowSize = Math.clamp(properties.getInt("circuit-breaker.sliding-window-size", 100), 1, Window.MAX_CALLS);
+        this.minimumNumberOfCalls = Math.clamp(properties.getInt("circuit-breaker.minimum-number-of-calls", 20), 1, slidingWindowSize);
+        this.failureRateThreshold = Double.parseDouble(properties.getString("circuit-breaker.failure-rate-threshold", "50"));
+        this.slowCallRateThreshold = Double.parseDouble(properties.getString("circuit-breaker.slow-call-rate-threshold", "100"));
+        this.slowCallDurationNanos = properties.getDuration("circuit-breaker.slow-call-duration-threshold", Duration.ofSeconds(2)).toNanos();
+        this.waitInOpenNanos = properties.getDuration("circuit-breaker.wait-duration-in-open-state", Duration.ofSeconds(10)).toNanos();
+        this.permittedCallsInHalfOpen = Math.clamp(properties.getInt("circuit-breaker.permitted-calls-in-half-open-state", 5), 1, Window.MAX_CALLS);
+        this.listener = listener;
+        this.phase = new AtomicReference<>(closed());
+
+        this.meterRegistry = meterRegistry;
+        this.successes = calls("success");
+        this.failures = calls("failure");
+        this.rejections = calls("rejected");
+        Gauge.builder("feign.client.circuit-breaker.state", this, breaker -> breaker.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("client", clientName)
+                .register(meterRegistry);
+        Gauge.builder("feign.client.circuit-breaker.failure.rate", this, breaker -> breaker.rate(Window.FAILED))
+                .description("Failure rate in percent over the current window")
+                .tag("client", clientName)
+                .register(meterRegistry);
+        Gauge.builder("feign.client.circuit-breaker.slow.rate", this, breaker -> breaker.rate(Window.SLOW))
+                .description("Slow call rate in percent over the current window")
+                .tag("client", clientName)
+                .register(meterRegistry);
+    }
+
+    private Counter calls(String outcome) {
+        return Counter.builder("feign.client.circuit-breaker.calls")
+                .description("Calls seen by the circuit breaker, by outcome")
+                .tag("client", clientName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Client delegate() {
+        return delegate;
+    }
+
+    public State state() {
+        return phase.get().state();
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        var current = acquirePermission();
+        long start = System.nanoTime();
+        int outcome = NOT_RECORDED;
+        try {
+            var response = delegate.execute(request, options);
+            outcome = (response.status() >= 500 ? Window.FAILED : 0) | slow(start);
+            return response;
+        } catch (IOException e) {
+            outcome = Window.FAILED | slow(start);
+            throw e;
+        } finally {
+            if (outcome != NOT_RECORDED) {
+                onOutcome(current, outcome);
+            } else if (current.probes() != null) {
+                // Any other throwable, Errors included: hand the probe back or the half-open circuit never closes
+                current.probes().incrementAndGet();
+            }
+        }
+    }
+
+    private Phase acquirePermission() {
+        while (true) {
+            var current = phase.get();
+            switch (current.state()) {
+                case CLOSED -> {
+                    return current;
+                }
+                case OPEN -> {
+                    if (System.nanoTime() - current.openedAtNanos() < waitInOpenNanos) {
+                        throw reject(current);
+                    }
+                    transition(current, halfOpen());
+                }
+                case HALF_OPEN -> {
+                    if (tryTakeProbe(current.probes())) {
+                        return current;
+                    }
+                    throw reject(current);
+                }
+            }
+        }
+    }
+
+    private static boolean tryTakeProbe(AtomicInteger probes) {
+        int left;
+        do {
+            left = probes.get();
+            if (left <= 0) {
+                return false;
+            }
+        } while (!probes.compareAndSet(left, left - 1));
+        return true;
+    }
+
+    private CircuitBreakerOpenException reject(Phase current) {
+        rejections.increment();
+        return new CircuitBreakerOpenException(clientName, current.state());
+    }
+
+    private int slow(long startNanos) {
+        return System.nanoTime() - startNanos >= slowCallDurationNanos ? Window.SLOW : 0;
+    }
+
+    // Outcomes of calls that started in a phase since replaced land in its window and are ignored
+    private void onOutcome(Phase current, int outcome) {
+        ((outcome & Window.FAILED) != 0 ? failures : successes).increment();
+        long totals = current.window().record(outcome);
+        int calls = Window.calls(totals);
+        if (current.state() == State.CLOSED) {
+            if (calls >= minimumNumberOfCalls && exceeded(totals)) {
+                transition(current, open());
+            }
+        } else if (calls >= permittedCallsInHalfOpen) {
+            transition(current, exceeded(totals) ? open() : closed());
+        }
+    }
+
+    private boolean exceeded(long totals) {
+        double calls = Window.calls(totals);
+        return Window.count(totals, Window.FAILED) * 100 / calls >= failureRateThreshold
+                || Window.count(totals, Window.SLOW) * 100 / calls >= slowCallRateThreshold;
+    }
+
+    private double rate(int outcome) {
+        var window = phase.get().window();
+        if (window == null) {
+            return 0;
+        }
+        long totals = window.totals();
+        int calls = Window.calls(totals);
+        return calls == 0 ? 0 : Window.count(totals, outcome) * 100.0 / calls;
+    }
+
+    private Phase closed() {
+        return new Phase(State.CLOSED, new Window(slidingWindowSize), 0, null);
+    }
+
+    private Phase open() {
+        return new Phase(State.OPEN, null, System.nanoTime(), null);
+    }
+
+    private Phase halfOpen() {
+        return new Phase(State.HALF_OPEN, new Window(permittedCallsInHalfOpen), 0,
+                new AtomicInteger(permittedCallsInHalfOpen));
+    }
+
+    private void transition(Phase from, Phase to) {
+        if (!phase.compareAndSet(from, to)) {
+            return;
+        }
+        Counter.builder("feign.client.circuit-breaker.transitions")
+                .description("Circuit breaker state transitions")
+                .tag("client", clientName)
+                .tag("from", from.state().name().toLowerCase())
+                .tag("to", to.state().name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+        if (to.state() == State.OPEN) {
+            log.warn("Circuit breaker for {} went from {} to OPEN", clientName, from.state());
+        } else {
+            log.info("Circuit breaker for {} went from {} to {}", clientName, from.state(), to.state());
+        }
+        listener.accept(new Transition(clientName, from.state(), to.state()));
+    }
+
+    /**
+     * Ring buffer of call outcomes. The number of recorded, failed and slow calls in the buffer are packed in a
+     * single {@code long} (21 bits each), so one atomic add keeps them consistent with each other.
+     */
+    static final class Window {
+
+        static final int RECORDED = 1;
+        static final int FAILED = 2;
+        static final int SLOW = 4;
+        static final int MAX_CALLS = (1 << 21) - 1;
+
+        private final AtomicIntegerArray slots;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicLong totals = new AtomicLong();
+
+        Window(int size) {
+            this.slots = new AtomicIntegerArray(size);
+        }
+
+        long record(int outcome) {
+            int index = Math.floorMod(cursor.getAndIncrement(), slots.length());
+            int previous = slots.getAndSet(index, outcome | RECORDED);
+            return totals.addAndGet(packed(outcome | RECORDED) - packed(previous));
+        }
+
+        long totals() {
+            return totals.get();
+        }
+
+        static int calls(long totals) {
+            return (int) (totals >>> 42);
+        }
+
+        static int count(long totals, int outcome) {
+            return outcome == FAILED ? (int) ((totals >>> 21) & MAX_CALLS) : (int) (totals & MAX_CALLS);
+        }
+
+        private static long packed(int outcome) {
+            return ((long) (outcome & RECORDED) << 42)
+                    | ((long) ((outcome & FAILED) >> 1) << 21)
+                    | ((outcome & SLOW) >> 2);
+        }
+    }
+}
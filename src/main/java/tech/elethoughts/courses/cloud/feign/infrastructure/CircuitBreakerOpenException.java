@@ -0,0 +1,25 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+/**
+ * Thrown by {@link CircuitBreakerClient} when a request is rejected because the circuit is open, or half-open
+ * with all its probe calls taken. The request was not sent.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private final String clientName;
+    private final CircuitBreakerClient.State state;
+
+    public CircuitBreakerOpenException(String clientName, CircuitBreakerClient.State state) {
+        super("Circuit breaker " + state + " for: " + clientName);
+        this.clientName = clientName;
+        this.state = state;
+    }
+
+    public String clientName() {
+        return clientName;
+    }
+
+    public CircuitBreakerClient.State state() {
+        return state;
+    }
+}
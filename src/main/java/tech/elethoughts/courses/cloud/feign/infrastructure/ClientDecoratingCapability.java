@@ -0,0 +1,24 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Capability;
+import feign.Client;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link Capability} wrapping the client's transport {@link Client}. Feign invokes capabilities
+ * reflectively, hence a public class rather than anonymous ones.
+ */
+public final class ClientDecoratingCapability implements Capability {
+
+    private final UnaryOperator<Client> decorator;
+
+    public ClientDecoratingCapability(UnaryOperator<Client> decorator) {
+        this.decorator = decorator;
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return decorator.apply(client);
+    }
+}
@@ -0,0 +1,25 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+/**
+ * Thrown by {@link AdaptiveConcurrencyLimitClient} when a request is shed because the client already has
+ * {@code limit} requests in flight. The request was not sent, so it is safe to retry elsewhere or later.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final String clientName;
+    private final int limit;
+
+    public ConcurrencyLimitExceededException(String clientName, int limit) {
+        super("Concurrency limit of " + limit + " reached for: " + clientName);
+        this.clientName = clientName;
+        this.limit = limit;
+    }
+
+    public String clientName() {
+        return clientName;
+    }
+
+    public int limit() {
+        return limit;
+    }
+}
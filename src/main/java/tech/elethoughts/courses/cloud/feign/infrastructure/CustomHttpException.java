@@ -1,21 +1,47 @@
 package tech.elethoughts.courses.cloud.feign.infrastructure;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 public class CustomHttpException extends RuntimeException {
 
     private final int status;
-    private final String body;
+    private final byte[] body;
+    private final Charset charset;
+    private final boolean bodyTruncated;
+    private String decodedBody;
 
     public CustomHttpException(int status, String message, String body) {
+        this(status, message, body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
+    }
+
+    /**
+     * @param body          the captured body bytes, possibly only the start of the response body
+     * @param bodyTruncated whether the response body was longer than {@code body}
+     */
+    public CustomHttpException(int status, String message, byte[] body, Charset charset, boolean bodyTruncated) {
         super(message);
         this.status = status;
         this.body = body;
+        this.charset = charset;
+        this.bodyTruncated = bodyTruncated;
     }
 
     public int status() {
         return status;
     }
 
+    // Decoded on first access: most callers only look at the status
     public String body() {
-        return body;
+        var decoded = decodedBody;
+        if (decoded == null) {
+            decoded = new String(body, charset);
+            decodedBody = decoded;
+        }
+        return decoded;
+    }
+
+    public boolean bodyTruncated() {
+        return bodyTruncated;
     }
 }
@@ -0,0 +1,11 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+
+/**
+ * A {@link Client} decorating another one, so that the transport underneath can still be found.
+ */
+public interface DelegatingClient extends Client {
+
+    Client delegate();
+}
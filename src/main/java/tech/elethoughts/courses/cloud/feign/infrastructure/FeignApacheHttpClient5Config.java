@@ -2,8 +2,12 @@ package tech.elethoughts.courses.cloud.feign.infrastructure;
 
 import feign.Client;
 import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
@@ -13,13 +17,14 @@ import org.apache.hc.client5.http.socket.LayeredConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
 import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.concurrent.DefaultThreadFactory;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.io.SocketConfig;
 import org.apache.hc.core5.http.ssl.TLS;
 import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.ConnPoolControl;
 import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
 import org.apache.hc.core5.pool.PoolReusePolicy;
-import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.ssl.SSLContexts;
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
@@ -29,24 +34,32 @@ import org.springframework.cloud.openfeign.clientconfig.HttpClient5FeignConfigur
 import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.env.Environment;
-import org.springframework.core.io.DefaultResourceLoader;
-import org.springframework.core.io.ResourceLoader;
+import tech.elethoughts.courses.cloud.feign.infrastructure.InstrumentedHttpClientConnectionManager.RouteSettings;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class FeignApacheHttpClient5Config {
 
     private final FeignClientProperties properties;
-    private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+    private final MeterRegistry meterRegistry;
+    private final FeignSslContextFactory sslContextFactory;
     private CloseableHttpClient httpClient5;
+    private IdleConnectionEvictor evictor;
 
     public FeignApacheHttpClient5Config(Environment env,
-                                         @Value("${spring.cloud.openfeign.client.name}") String clientName) {
+                                         @Value("${spring.cloud.openfeign.client.name}") String clientName,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
         this.properties = new FeignClientProperties(env, clientName);
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.sslContextFactory = new FeignSslContextFactory(properties, this.meterRegistry);
     }
 
     @Bean
@@ -55,22 +68,37 @@ public class FeignApacheHttpClient5Config {
     }
 
     @Bean
-    public HttpClientConnectionManager hc5ConnectionManager(FeignHttpClientProperties httpClientProperties) {
+    public InstrumentedHttpClientConnectionManager hc5ConnectionManager(FeignHttpClientProperties httpClientProperties) {
+        var routes = routeSettings();
+        var defaultConnectionConfig = ConnectionConfig.custom()
+                .setTimeToLive(TimeValue.of(httpClientProperties.getTimeToLive(), httpClientProperties.getTimeToLiveUnit()))
+                .setValidateAfterInactivity(TimeValue.of(
+                        properties.getDuration("pool.validate-after-inactivity", Duration.ofSeconds(2))))
+                .build();
+        var defaultSocketConfig = tcpKeepAlive(SocketConfig.custom()
+                .setSoTimeout(Timeout.of(httpClientProperties.getHc5().getSocketTimeout(),
+                        httpClientProperties.getHc5().getSocketTimeoutUnit())))
+                .build();
         var builder = PoolingHttpClientConnectionManagerBuilder.create()
                 .setSSLSocketFactory(httpsSSLConnectionSocketFactory(httpClientProperties.isDisableSslValidation()))
                 .setMaxConnTotal(httpClientProperties.getMaxConnections())
                 .setMaxConnPerRoute(httpClientProperties.getMaxConnectionsPerRoute())
                 .setConnPoolPolicy(PoolReusePolicy.valueOf(httpClientProperties.getHc5().getPoolReusePolicy().name()))
                 .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.valueOf(httpClientProperties.getHc5().getPoolConcurrencyPolicy().name()))
-                .setConnectionTimeToLive(TimeValue.of(httpClientProperties.getTimeToLive(), httpClientProperties.getTimeToLiveUnit()))
-                .setDefaultSocketConfig(SocketConfig.custom()
-                        .setSoTimeout(Timeout.of(httpClientProperties.getHc5().getSocketTimeout(),
-                                httpClientProperties.getHc5().getSocketTimeoutUnit()))
-                        .build());
+                .setDefaultConnectionConfig(defaultConnectionConfig)
+                .setDefaultSocketConfig(defaultSocketConfig)
+                .setConnectionFactory(new InstrumentedConnectionFactory(properties.getClientName(), meterRegistry));
+        if (!routes.isEmpty()) {
+            builder.setConnectionConfigResolver(route -> connectionConfig(defaultConnectionConfig,
+                            routes.get(InstrumentedHttpClientConnectionManager.hostName(route))))
+                    .setSocketConfigResolver(route -> socketConfig(defaultSocketConfig,
+                            routes.get(InstrumentedHttpClientConnectionManager.hostName(route))));
+        }
 
         configureTls(builder);
 
-        return builder.build();
+        return new InstrumentedHttpClientConnectionManager(builder.build(), properties.getClientName(), meterRegistry,
+                routes);
     }
 
     @Bean
@@ -83,7 +111,6 @@ public class FeignApacheHttpClient5Config {
                 .disableCookieManagement()
                 .useSystemProperties()
                 .setConnectionManager(connectionManager)
-                .evictExpiredConnections()
                 .setDefaultRequestConfig(RequestConfig.custom()
                         .setConnectTimeout(Timeout.of(httpClientProperties.getConnectionTimeout(), TimeUnit.MILLISECONDS))
                         .setRedirectsEnabled(httpClientProperties.isFollowRedirects())
@@ -93,6 +120,15 @@ public class FeignApacheHttpClient5Config {
 
         customizerProvider.getIfAvailable(List::of).forEach(c -> c.customize(builder));
 
+        if (connectionManager instanceof ConnPoolControl<?> pool) {
+            // Replaces HttpClientBuilder's evictor, whose interval cannot be set
+            evictor = new IdleConnectionEvictor(pool,
+                    new DefaultThreadFactory(properties.getClientName() + "-hc5-evictor", true),
+                    TimeValue.of(properties.getDuration("pool.eviction-interval", Duration.ofSeconds(5))),
+                    TimeValue.of(properties.getDuration("pool.idle-timeout", Duration.ofSeconds(30))));
+            evictor.start();
+        }
+
         httpClient5 = builder.build();
         return httpClient5;
     }
@@ -112,6 +148,9 @@ public class FeignApacheHttpClient5Config {
 
     @PreDestroy
     public void destroy() {
+        if (evictor != null) {
+            evictor.shutdown();
+        }
         if (httpClient5 != null) {
             httpClient5.close(CloseMode.GRACEFUL);
         }
@@ -137,37 +176,76 @@ public class FeignApacheHttpClient5Config {
         return builder.build();
     }
 
+    /**
+     * {@code routes.<host>.*} by lower-case host name. Hosts containing dots are written in brackets:
+     * {@code routes[pokeapi.co].max-connections}.
+     */
+    private Map<String, RouteSettings> routeSettings() {
+        var routes = new HashMap<String, RouteSettings>();
+        properties.getMap("routes", RouteSettings.class)
+                .forEach((host, settings) -> routes.put(host.toLowerCase(Locale.ROOT), settings));
+        return routes;
+    }
+
+    /**
+     * TCP keep-alive probes keep NAT and load balancer entries of idle pooled connections alive, and detect dead
+     * peers. Idle, interval and count need JDK extended socket options (Linux, macOS).
+     */
+    private SocketConfig.Builder tcpKeepAlive(SocketConfig.Builder builder) {
+        if (!properties.getBoolean("pool.tcp-keep-alive.enabled", false)) {
+            return builder;
+        }
+        builder.setSoKeepAlive(true);
+        var idle = properties.getDuration("pool.tcp-keep-alive.idle", null);
+        if (idle != null) {
+            builder.setTcpKeepIdle((int) idle.toSeconds());
+        }
+        var interval = properties.getDuration("pool.tcp-keep-alive.interval", null);
+        if (interval != null) {
+            builder.setTcpKeepInterval((int) interval.toSeconds());
+        }
+        int count = properties.getInt("pool.tcp-keep-alive.count", 0);
+        if (count > 0) {
+            builder.setTcpKeepCount(count);
+        }
+        return builder;
+    }
+
+    private static ConnectionConfig connectionConfig(ConnectionConfig defaults, RouteSettings route) {
+        if (route == null) {
+            return defaults;
+        }
+        var config = ConnectionConfig.copy(defaults);
+        if (route.timeToLive() != null) {
+            config.setTimeToLive(TimeValue.of(route.timeToLive()));
+        }
+        if (route.validateAfterInactivity() != null) {
+            config.setValidateAfterInactivity(TimeValue.of(route.validateAfterInactivity()));
+        }
+        if (route.socketTimeout() != null) {
+            config.setSocketTimeout(Timeout.of(route.socketTimeout()));
+        }
+        return config.build();
+    }
+
+    private static SocketConfig socketConfig(SocketConfig defaults, RouteSettings route) {
+        if (route == null || route.socketTimeout() == null) {
+            return defaults;
+        }
+        return SocketConfig.copy(defaults).setSoTimeout(Timeout.of(route.socketTimeout())).build();
+    }
+
     private void configureTls(PoolingHttpClientConnectionManagerBuilder builder) {
         if (!properties.isTlsEnabled()) {
             return;
         }
 
         try {
-            var sslContext = createApacheSslContext();
+            var sslContext = sslContextFactory.createSslContext();
             var hostnameVerifier = properties.isVerifyHostname() ? null : NoopHostnameVerifier.INSTANCE;
             builder.setTlsSocketStrategy(new DefaultClientTlsStrategy(sslContext, hostnameVerifier));
         } catch (Exception e) {
             throw new IllegalStateException("TLS config failed for: " + properties.getClientName(), e);
         }
     }
-
-    private SSLContext createApacheSslContext() throws Exception {
-        var ssl = SSLContextBuilder.create();
-
-        var keyStore = properties.getKeyStore();
-        if (keyStore != null) {
-            var resource = resourceLoader.getResource(keyStore);
-            var pwd = properties.getKeyStorePassword();
-            ssl.loadKeyMaterial(resource.getURL(), pwd, pwd);
-        }
-
-        var trustStore = properties.getTrustStore();
-        if (trustStore != null) {
-            var resource = resourceLoader.getResource(trustStore);
-            var pwd = properties.getTrustStorePassword();
-            ssl.loadTrustMaterial(resource.getURL(), pwd);
-        }
-
-        return ssl.build();
-    }
 }
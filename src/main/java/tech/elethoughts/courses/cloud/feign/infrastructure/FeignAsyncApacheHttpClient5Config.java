@@ -0,0 +1,131 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.AsyncFeign;
+import feign.Contract;
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import feign.codec.ErrorDecoder;
+import feign.hc5.AsyncApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.FeignClientFactory;
+import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PokeApiClientHc5Async} over the HttpClient 5 async engine: an I/O reactor multiplexes all
+ * in-flight calls, so callers of the {@code CompletableFuture} methods don't hold a thread per request.
+ * With HTTP/2 negotiated, requests to the same route share one connection as concurrent streams.
+ * <p>
+ * Spring Cloud OpenFeign has no {@code AsyncFeign} support, so the client is built here from the
+ * contract, codecs and interceptors of its named {@link FeignClientFactory} context.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("spring.cloud.openfeign.client.config." + FeignAsyncApacheHttpClient5Config.CLIENT_NAME + ".url")
+public class FeignAsyncApacheHttpClient5Config {
+
+    static final String CLIENT_NAME = "pokemon-hc5-async";
+
+    private final FeignClientProperties properties;
+    private final FeignSslContextFactory sslContextFactory;
+
+    public FeignAsyncApacheHttpClient5Config(Environment env, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = new FeignClientProperties(env, CLIENT_NAME);
+        this.sslContextFactory = new FeignSslContextFactory(properties, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    public CloseableHttpAsyncClient pokemonHc5AsyncHttpClient(FeignHttpClientProperties httpClientProperties) {
+        var versionPolicy = HttpVersionPolicy.valueOf(properties.getString("async.version-policy", HttpVersionPolicy.NEGOTIATE.name()));
+        var connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setTlsStrategy(tlsStrategy())
+                .setDefaultTlsConfig(TlsConfig.custom().setVersionPolicy(versionPolicy).build())
+                .setMessageMultiplexing(versionPolicy != HttpVersionPolicy.FORCE_HTTP_1)
+                .setMaxConnTotal(httpClientProperties.getMaxConnections())
+                .setMaxConnPerRoute(httpClientProperties.getMaxConnectionsPerRoute())
+                .setConnPoolPolicy(PoolReusePolicy.valueOf(httpClientProperties.getHc5().getPoolReusePolicy().name()))
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.valueOf(httpClientProperties.getHc5().getPoolConcurrencyPolicy().name()))
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(httpClientProperties.getConnectionTimeout(), TimeUnit.MILLISECONDS))
+                        .setSocketTimeout(Timeout.of(httpClientProperties.getHc5().getSocketTimeout(),
+                                httpClientProperties.getHc5().getSocketTimeoutUnit()))
+                        .setTimeToLive(TimeValue.of(httpClientProperties.getTimeToLive(), httpClientProperties.getTimeToLiveUnit()))
+                        .build())
+                .build();
+
+        var builder = HttpAsyncClients.custom()
+                .disableCookieManagement()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(properties.getInt("async.io-threads", Runtime.getRuntime().availableProcessors()))
+                        .build());
+
+        var host = properties.getProxyHost();
+        if (properties.isProxyEnabled() && host != null && !host.isBlank()) {
+            builder.setRoutePlanner(new DefaultProxyRoutePlanner(new HttpHost(host, properties.getProxyPort())));
+        }
+
+        var httpClient = builder.build();
+        httpClient.start();
+        return httpClient;
+    }
+
+    @Bean
+    public PokeApiClientHc5Async pokeApiClientHc5Async(CloseableHttpAsyncClient pokemonHc5AsyncHttpClient,
+                                                       FeignClientFactory feignClientFactory) {
+        var errorDecoder = feignClientFactory.getInstance(CLIENT_NAME, ErrorDecoder.class);
+        return AsyncFeign.<HttpClientContext>builder()
+                .client(new AsyncApacheHttp5Client(pokemonHc5AsyncHttpClient))
+                .contract(feignClientFactory.getInstance(CLIENT_NAME, Contract.class))
+                .encoder(feignClientFactory.getInstance(CLIENT_NAME, Encoder.class))
+                .decoder(feignClientFactory.getInstance(CLIENT_NAME, Decoder.class))
+                .errorDecoder(errorDecoder != null ? errorDecoder : new ErrorDecoder.Default())
+                .requestInterceptors(feignClientFactory.getInstances(CLIENT_NAME, RequestInterceptor.class).values())
+                .options(new Request.Options(
+                        properties.getInt("connect-timeout", 10_000), TimeUnit.MILLISECONDS,
+                        properties.getInt("read-timeout", 60_000), TimeUnit.MILLISECONDS,
+                        properties.getBoolean("follow-redirects", true)))
+                .target(PokeApiClientHc5Async.class, properties.getString("url"));
+    }
+
+    private TlsStrategy tlsStrategy() {
+        if (!properties.isTlsEnabled()) {
+            return new DefaultClientTlsStrategy(SSLContexts.createSystemDefault());
+        }
+
+        try {
+            var sslContext = sslContextFactory.createSslContext();
+            var hostnameVerifier = properties.isVerifyHostname() ? null : NoopHostnameVerifier.INSTANCE;
+            return new DefaultClientTlsStrategy(sslContext, hostnameVerifier);
+        } catch (Exception e) {
+            throw new IllegalStateException("TLS config failed for: " + properties.getClientName(), e);
+        }
+    }
+}
@@ -2,17 +2,34 @@ package tech.elethoughts.courses.cloud.feign.infrastructure;
 
 import feign.*;
 import feign.codec.ErrorDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 public class FeignClientConfig {
 
+    private final FeignClientProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public FeignClientConfig(Environment env, @Value("${spring.cloud.openfeign.client.name}") String clientName,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = new FeignClientProperties(env, clientName);
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
     @Bean
     ErrorDecoder errorDecoder() {
+        int maxBytes = properties.getInt("error-body.max-bytes", 8 * 1024);
+        int drainBytes = properties.getInt("error-body.drain-bytes", 64 * 1024);
         return new ErrorDecoder() {
             private final ErrorDecoder defaultDecoder = new Default();
 
@@ -20,20 +37,56 @@ public class FeignClientConfig {
             public Exception decode(String methodKey, Response response) {
                 int status = response.status();
                 if (status >= 400 && status < 500) {
-                    return new CustomHttpException(status, methodKey, extractBody(response));
+                    return captureBody(status, methodKey, response, maxBytes, drainBytes);
                 }
                 return defaultDecoder.decode(methodKey, response);
             }
+        };
+    }
 
-            private String extractBody(Response response) {
-                if (response.body() == null) return "";
-                try (var is = response.body().asInputStream()) {
-                    return new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                } catch (IOException e) {
-                    return "";
+    /**
+     * Keeps at most {@code maxBytes} of the body, read into an array sized from {@code Content-Length} when known.
+     * Up to {@code drainBytes} more are skipped so the connection can go back to the pool; beyond that the rest
+     * is left to the transport when the body is closed (HC5 drains it, {@code HttpURLConnection} drops the
+     * connection). The charset is only applied when {@link CustomHttpException#body()} is called.
+     */
+    static CustomHttpException captureBody(int status, String methodKey, Response response, int maxBytes, int drainBytes) {
+        if (response.body() == null) {
+            return new CustomHttpException(status, methodKey, new byte[0], response.charset(), false);
+        }
+        var length = response.body().length();
+        var buffer = new byte[length != null ? Math.min(length, maxBytes) : maxBytes];
+        try (var in = response.body().asInputStream()) {
+            int read = in.readNBytes(buffer, 0, buffer.length);
+            boolean truncated;
+            if (length != null) {
+                truncated = length > read;
+                if (truncated && length - read <= drainBytes) {
+                    skip(in, length - read);
                 }
+            } else {
+                truncated = read == buffer.length && skip(in, drainBytes) > 0;
             }
-        };
+            var body = read == buffer.length ? buffer : Arrays.copyOf(buffer, read);
+            return new CustomHttpException(status, methodKey, body, response.charset(), truncated);
+        } catch (IOException e) {
+            return new CustomHttpException(status, methodKey, new byte[0], response.charset(), false);
+        }
+    }
+
+    private static long skip(InputStream in, long limit) throws IOException {
+        long skipped = 0;
+        while (skipped < limit) {
+            long n = in.skip(limit - skipped);
+            if (n <= 0) {
+                if (in.read() == -1) {
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+        return skipped;
     }
 
     @Bean
@@ -47,30 +100,7 @@ public class FeignClientConfig {
 
     @Bean
     Retryer retryer() {
-        return new Retryer() {
-            private final int maxAttempts = 3;
-            private final long initialBackoffMs = 100;
-            private final long maxBackoffMs = 1000;
-            private int attempt = 1;
-
-            @Override
-            public void continueOrPropagate(RetryableException e) {
-                if (attempt >= maxAttempts) throw e;
-                long backoff = Math.min(initialBackoffMs * (1L << (attempt - 1)), maxBackoffMs);
-                try {
-                    Thread.sleep(backoff);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                    throw e;
-                }
-                attempt++;
-            }
-
-            @Override
-            public Retryer clone() {
-                return retryer();
-            }
-        };
+        return new BudgetedRetryer(properties, meterRegistry);
     }
 
     @Bean
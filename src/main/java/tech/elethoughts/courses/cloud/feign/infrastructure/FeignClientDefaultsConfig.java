@@ -0,0 +1,85 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Capability;
+import feign.Client;
+import feign.codec.Decoder;
+import feign.optionals.OptionalDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.openfeign.support.FeignHttpMessageConverters;
+import org.springframework.cloud.openfeign.support.ResponseEntityDecoder;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Default configuration applied to every Feign client context.
+ * <p>
+ * Cross-cutting client decorators are {@link Capability} beans, so they wrap whichever transport
+ * {@code Client} the client's own configuration provides. The {@code decoder} property picks the
+ * response decoder: {@code spring} (default), {@code streaming} or {@code projection}. Circuit breaker
+ * transitions are published as {@link CircuitBreakerClient.Transition} application events.
+ */
+public class FeignClientDefaultsConfig {
+
+    private final FeignClientProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FeignClientDefaultsConfig(Environment env,
+                                     @Value("${spring.cloud.openfeign.client.name}") String clientName,
+                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                     ApplicationEventPublisher eventPublisher) {
+        this.properties = new FeignClientProperties(env, clientName);
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.eventPublisher = eventPublisher;
+    }
+
+    // FeignHttpMessageConverters fills its converter list lazily without synchronization: a burst of first
+    // calls (easy to get with virtual threads) can see an empty list. Build it before the client is used.
+    @Bean
+    SmartInitializingSingleton feignHttpMessageConvertersInitializer(ObjectProvider<FeignHttpMessageConverters> converters) {
+        return () -> converters.ifAvailable(FeignHttpMessageConverters::getConverters);
+    }
+
+    // Same chain as FeignClientsConfiguration's default decoder, with a choice of core decoder
+    @Bean
+    Decoder feignDecoder(ObjectProvider<FeignHttpMessageConverters> messageConverters) {
+        var springDecoder = new SpringDecoder(messageConverters);
+        var name = properties.getString("decoder", "spring");
+        Decoder decoder = switch (name) {
+            case "spring" -> springDecoder;
+            case "streaming" -> new StreamingJacksonDecoder(springDecoder);
+            case "projection" -> new RecordProjectionDecoder(new StreamingJacksonDecoder(springDecoder));
+            default -> throw new IllegalStateException("Unknown decoder '" + name + "' for: " + properties.getClientName());
+        };
+        return new OptionalDecoder(new ResponseEntityDecoder(decoder));
+    }
+
+    @Bean
+    Capability clientDecoratorsCapability() {
+        return new ClientDecoratingCapability(this::decorate);
+    }
+
+    // Innermost first: the cache answers before a request can join or start an in-flight call, only calls
+    // that actually go upstream count against the concurrency limit, and an open circuit doesn't take a slot
+    private Client decorate(Client client) {
+        if (properties.getBoolean("limiter.enabled", false)) {
+            client = new AdaptiveConcurrencyLimitClient(client, properties, meterRegistry);
+        }
+        if (properties.getBoolean("circuit-breaker.enabled", false)) {
+            client = new CircuitBreakerClient(client, properties, meterRegistry, eventPublisher::publishEvent);
+        }
+        if (properties.getBoolean("single-flight.enabled", false)) {
+            client = new SingleFlightClient(client, properties, meterRegistry);
+        }
+        if (properties.getBoolean("cache.enabled", false)) {
+            client = new CachingClient(client, properties, meterRegistry);
+        }
+        return client;
+    }
+}
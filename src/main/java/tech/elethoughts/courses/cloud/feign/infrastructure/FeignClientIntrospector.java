@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -121,6 +122,16 @@ public class FeignClientIntrospector implements CommandLineRunner {
     }
 
     private String resolveHttpClientType(Client client) {
+        var decorators = new ArrayList<String>();
+        while (client instanceof DelegatingClient delegating) {
+            decorators.add(client.getClass().getSimpleName());
+            client = delegating.delegate();
+        }
+        var type = resolveTransportType(client);
+        return decorators.isEmpty() ? type : type + " via " + String.join(" > ", decorators);
+    }
+
+    private String resolveTransportType(Client client) {
         if (client == null) {
             return "Default (HttpURLConnection)";
         }
@@ -1,17 +1,53 @@
 package tech.elethoughts.courses.cloud.feign.infrastructure;
 
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.core.env.Environment;
-
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-client settings read from {@code spring.cloud.openfeign.client.config.<name>.*}.
+ * <p>
+ * Values are resolved against the {@link Environment} once and kept as an immutable snapshot,
+ * so reads on the request path never walk the property sources. Settings are read at startup: they are copied
+ * into the clients' transports, pools and decorators when those are built, so later environment changes have no
+ * effect until the application context is restarted.
+ */
 public class FeignClientProperties {
 
     private static final String PREFIX = "spring.cloud.openfeign.client.config.";
 
     private final Environment env;
     private final String clientName;
+    private final String prefix;
+    private final Map<String, Optional<String>> strings = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Boolean>> booleans = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Integer>> ints = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Duration>> durations = new ConcurrentHashMap<>();
+    private final Map<String, Optional<DataSize>> dataSizes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, ?>> maps = new ConcurrentHashMap<>();
+    private final Snapshot snapshot;
 
     public FeignClientProperties(Environment env, String clientName) {
         this.env = env;
         this.clientName = clientName;
+        this.prefix = PREFIX + clientName + ".";
+        this.snapshot = bind();
+    }
+
+    public record Snapshot(boolean proxyEnabled, String proxyHost, int proxyPort,
+                           boolean tlsEnabled, String trustStore, String trustStorePassword,
+                           String keyStore, String keyStorePassword, boolean verifyHostname) {
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
     }
 
     public String getClientName() {
@@ -19,54 +55,89 @@ public class FeignClientProperties {
     }
 
     public boolean isProxyEnabled() {
-        return getBoolean("proxy.enabled", false);
+        return snapshot.proxyEnabled();
     }
 
     public String getProxyHost() {
-        return getString("proxy.host");
+        return snapshot.proxyHost();
     }
 
     public int getProxyPort() {
-        return getInt("proxy.port", 8080);
+        return snapshot.proxyPort();
     }
 
     public boolean isTlsEnabled() {
-        return getBoolean("tls.enabled", false);
+        return snapshot.tlsEnabled();
     }
 
     public String getTrustStore() {
-        return getString("tls.trust-store");
+        return snapshot.trustStore();
     }
 
     public char[] getTrustStorePassword() {
-        return getString("tls.trust-store-password", "").toCharArray();
+        return snapshot.trustStorePassword().toCharArray();
     }
 
     public String getKeyStore() {
-        return getString("tls.key-store");
+        return snapshot.keyStore();
     }
 
     public char[] getKeyStorePassword() {
-        return getString("tls.key-store-password", "").toCharArray();
+        return snapshot.keyStorePassword().toCharArray();
     }
 
     public boolean isVerifyHostname() {
-        return getBoolean("tls.verify-hostname", true);
+        return snapshot.verifyHostname();
     }
 
     public boolean getBoolean(String key, boolean defaultValue) {
-        return Boolean.parseBoolean(env.getProperty(PREFIX + clientName + "." + key, String.valueOf(defaultValue)));
+        return booleans.computeIfAbsent(key, k -> raw(k).map(Boolean::parseBoolean)).orElse(defaultValue);
     }
 
     public String getString(String key) {
-        return env.getProperty(PREFIX + clientName + "." + key);
+        return getString(key, null);
     }
 
     public String getString(String key, String defaultValue) {
-        return env.getProperty(PREFIX + clientName + "." + key, defaultValue);
+        return strings.computeIfAbsent(key, this::raw).orElse(defaultValue);
     }
 
     public int getInt(String key, int defaultValue) {
-        return Integer.parseInt(env.getProperty(PREFIX + clientName + "." + key, String.valueOf(defaultValue)));
+        return ints.computeIfAbsent(key, k -> raw(k).map(Integer::parseInt)).orElse(defaultValue);
+    }
+
+    public Duration getDuration(String key, Duration defaultValue) {
+        return durations.computeIfAbsent(key, k -> raw(k).map(DurationStyle::detectAndParse)).orElse(defaultValue);
+    }
+
+    public DataSize getDataSize(String key, DataSize defaultValue) {
+        return dataSizes.computeIfAbsent(key, k -> raw(k).map(DataSize::parse)).orElse(defaultValue);
+    }
+
+    /**
+     * Binds {@code <key>.<name>.*} to one {@code type} per name, e.g. per-host settings. Names containing dots
+     * need brackets: {@code routes[pokeapi.co].max-connections}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getMap(String key, Class<T> type) {
+        return (Map<String, T>) maps.computeIfAbsent(key + ":" + type.getName(), _ -> Map.copyOf(Binder.get(env)
+                .bind(prefix + key, Bindable.mapOf(String.class, type)).orElse(Map.of())));
+    }
+
+    private Optional<String> raw(String key) {
+        return Optional.ofNullable(env.getProperty(prefix + key));
+    }
+
+    private Snapshot bind() {
+        return new Snapshot(
+                getBoolean("proxy.enabled", false),
+                getString("proxy.host"),
+                getInt("proxy.port", 8080),
+                getBoolean("tls.enabled", false),
+                getString("tls.trust-store"),
+                getString("tls.trust-store-password", ""),
+                getString("tls.key-store"),
+                getString("tls.key-store-password", ""),
+                getBoolean("tls.verify-hostname", true));
     }
 }
@@ -0,0 +1,136 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.cloud.openfeign.FeignClientFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens connections for every client with {@code warmup.enabled} before the application reports ready.
+ * <p>
+ * For each client, {@code warmup.connections} concurrent {@code warmup.method} requests (default {@code HEAD /})
+ * are sent to its {@code url} through the client's transport, bypassing cache, coalescing and limits. Concurrent
+ * requests each need a connection, so they pay DNS, connect, proxy {@code CONNECT} and TLS handshake up front and
+ * leave the connections in the pool (HC5) or keep-alive cache ({@code HttpURLConnection}); the HTTP/2 client
+ * multiplexes them on one connection. Any response counts: only the connection matters. Failures are logged and
+ * don't stop the application.
+ * <p>
+ * Runners run before {@code ApplicationReadyEvent}, which is what flips readiness to {@code ACCEPTING_TRAFFIC}:
+ * the readiness probe stays down until every pool is warm (or its warm-up timed out).
+ */
+@Component
+public class FeignClientWarmer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(FeignClientWarmer.class);
+
+    private final FeignClientFactory feignClientFactory;
+    private final Environment env;
+    private final MeterRegistry meterRegistry;
+
+    public FeignClientWarmer(FeignClientFactory feignClientFactory, Environment env,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        this.feignClientFactory = feignClientFactory;
+        this.env = env;
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    @Override
+    public void run(String... args) {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var clientName : feignClientFactory.getContextNames()) {
+                var properties = new FeignClientProperties(env, clientName);
+                if (properties.getBoolean("warmup.enabled", false)) {
+                    executor.submit(() -> warm(properties));
+                }
+            }
+        }
+    }
+
+    void warm(FeignClientProperties properties) {
+        var clientName = properties.getClientName();
+        var url = properties.getString("url");
+        Client client = feignClientFactory.getInstanceWithoutAncestors(clientName, Client.class);
+        if (url == null || client == null) {
+            log.info("Skipping warm-up of {}: no url or no transport of its own", clientName);
+            return;
+        }
+        while (client instanceof DelegatingClient delegating) {
+            client = delegating.delegate();
+        }
+        warm(client, properties, url + properties.getString("warmup.path", "/"));
+    }
+
+    /**
+     * @return the number of requests that got a response
+     */
+    int warm(Client client, FeignClientProperties properties, String url) {
+        var clientName = properties.getClientName();
+        int connections = properties.getInt("warmup.connections", 4);
+        var method = Request.HttpMethod.valueOf(properties.getString("warmup.method", "HEAD"));
+        var timeout = properties.getDuration("warmup.timeout", Duration.ofSeconds(10));
+        var request = Request.create(method, url, Map.of(), null, StandardCharsets.UTF_8, null);
+        var options = new Request.Options(timeout.toMillis(), TimeUnit.MILLISECONDS,
+                timeout.toMillis(), TimeUnit.MILLISECONDS, false);
+
+        long start = System.nanoTime();
+        int warmed = 0;
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var calls = new ArrayList<Future<Integer>>(connections);
+            for (int i = 0; i < connections; i++) {
+                calls.add(executor.submit(() -> send(client, request, options)));
+            }
+            for (var call : calls) {
+                try {
+                    call.get();
+                    warmed++;
+                } catch (ExecutionException e) {
+                    log.warn("Warm-up request of {} to {} failed: {}", clientName, url, e.getCause().toString());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return warmed;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("feign.client.warmup")
+                .description("Time to warm up a client's connections at startup")
+                .tag("client", clientName)
+                .tag("outcome", warmed == connections ? "success" : "failure")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Warmed up {}: {}/{} requests to {} answered in {} ms", clientName, warmed, connections, url,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return warmed;
+    }
+
+    // Reads the body to the end so the connection can go back to the pool
+    private static Integer send(Client client, Request request, Request.Options options) throws IOException {
+        try (var response = client.execute(request, options)) {
+            if (response.body() != null) {
+                try (var in = response.body().asInputStream()) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return response.status();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package tech.elethoughts.courses.cloud.feign.infrastructure;
 
 import feign.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
 import org.springframework.context.annotation.Bean;
@@ -15,11 +18,14 @@ public class FeignDefaultClientConfig {
 
     private final FeignClientProperties properties;
     private final FeignSslContextFactory sslContextFactory;
+    private final MeterRegistry meterRegistry;
 
     public FeignDefaultClientConfig(Environment env,
-                                     @Value("${spring.cloud.openfeign.client.name}") String clientName) {
+                                     @Value("${spring.cloud.openfeign.client.name}") String clientName,
+                                     ObjectProvider<MeterRegistry> meterRegistry) {
         this.properties = new FeignClientProperties(env, clientName);
-        this.sslContextFactory = new FeignSslContextFactory(properties);
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.sslContextFactory = new FeignSslContextFactory(properties, this.meterRegistry);
     }
 
     @Bean
@@ -41,6 +47,10 @@ public class FeignDefaultClientConfig {
             }
         }
 
+        if ("pooled".equals(properties.getString("transport", "url-connection"))) {
+            return new PooledHttpClient(sslSocketFactory, hostnameVerifier, createProxy(), properties,
+                    httpClientProperties, meterRegistry);
+        }
         return new Client.Proxied(sslSocketFactory, hostnameVerifier, createProxy());
     }
 
@@ -1,7 +1,11 @@
 package tech.elethoughts.courses.cloud.feign.infrastructure;
 
 import feign.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import feign.http2client.Http2Client;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.openfeign.clientconfig.http2client.Http2ClientCustomizer;
 import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
@@ -12,17 +16,26 @@ import java.net.InetSocketAddress;
 import java.net.ProxySelector;
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
-public class FeignHttp2ClientConfig {
+public class FeignHttp2ClientConfig implements DisposableBean {
 
+    private final Environment env;
     private final FeignClientProperties properties;
+    private final MeterRegistry meterRegistry;
     private final FeignSslContextFactory sslContextFactory;
+    private ExecutorService executor;
+    private ShardedHttp2Client shardedClient;
 
     public FeignHttp2ClientConfig(Environment env,
-                                   @Value("${spring.cloud.openfeign.client.name}") String clientName) {
+                                   @Value("${spring.cloud.openfeign.client.name}") String clientName,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        this.env = env;
         this.properties = new FeignClientProperties(env, clientName);
-        this.sslContextFactory = new FeignSslContextFactory(properties);
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.sslContextFactory = new FeignSslContextFactory(properties, this.meterRegistry);
     }
 
     @Bean
@@ -41,9 +54,30 @@ public class FeignHttp2ClientConfig {
         return httpClientBuilder.build();
     }
 
+    // Hedging belongs to this transport: a second request is one more stream on the multiplexed connection.
+    // Shards are built from the same customized builder, so they share its SSLContext, proxy and executor.
     @Bean
-    public Client feignClient(HttpClient httpClient) {
-        return new Http2Client(httpClient);
+    public Client feignClient(HttpClient httpClient, HttpClient.Builder httpClientBuilder) {
+        int shards = properties.getInt("http2.shards",
+                env.getProperty("spring.cloud.openfeign.http2client.shards", Integer.class, 1));
+        Client client;
+        if (shards > 1) {
+            var httpClients = new ArrayList<HttpClient>(List.of(httpClient));
+            while (httpClients.size() < shards) {
+                httpClients.add(httpClientBuilder.build());
+            }
+            var selection = properties.getString("http2.shard-selection",
+                    env.getProperty("spring.cloud.openfeign.http2client.shard-selection", "least-in-flight"));
+            shardedClient = new ShardedHttp2Client(httpClients, ShardedHttp2Client.Selection.of(selection),
+                    properties.getClientName(), meterRegistry);
+            client = shardedClient;
+        } else {
+            client = new Http2Client(httpClient);
+        }
+        if (properties.getBoolean("hedging.enabled", false)) {
+            client = new HedgingClient(client, properties, meterRegistry);
+        }
+        return client;
     }
 
     @Bean
@@ -59,6 +93,31 @@ public class FeignHttp2ClientConfig {
         };
     }
 
+    // The client's own executor only runs response/async plumbing: see Http2Executors for the choices.
+    // With spring.threads.virtual.enabled it is virtual by default, so no platform thread is parked on a slow response.
+    @Bean
+    public Http2ClientCustomizer executorCustomizer() {
+        return builder -> {
+            if (executor == null) {
+                executor = Http2Executors.create(properties, env, meterRegistry);
+            }
+            if (executor != null) {
+                builder.executor(executor);
+            }
+        };
+    }
+
+    // The extra shard clients are not beans, and a decorated feignClient (hedging) hides the sharded client's close()
+    @Override
+    public void destroy() {
+        if (shardedClient != null) {
+            shardedClient.close();
+        }
+        if (executor != null && !Http2Executors.isShared(properties)) {
+            executor.shutdown();
+        }
+    }
+
     @Bean
     public Http2ClientCustomizer tlsCustomizer() {
         return builder -> {
@@ -0,0 +1,52 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cloud.openfeign.FeignClientFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/feignpools}: a snapshot of the connection pool of each Feign client (leased, available,
+ * pending and max connections, in total and per route). {@code /actuator/feignpools/{client}} shows one client.
+ * Only clients built by {@link FeignApacheHttpClient5Config}, or by {@link FeignDefaultClientConfig} with
+ * {@code transport: pooled}, have a pool; the others are not listed.
+ */
+@Component
+@Endpoint(id = "feignpools")
+public class FeignPoolsEndpoint {
+
+    private final FeignClientFactory feignClientFactory;
+
+    public FeignPoolsEndpoint(FeignClientFactory feignClientFactory) {
+        this.feignClientFactory = feignClientFactory;
+    }
+
+    @ReadOperation
+    public Map<String, InstrumentedHttpClientConnectionManager.PoolSnapshot> pools() {
+        var pools = new TreeMap<String, InstrumentedHttpClientConnectionManager.PoolSnapshot>();
+        for (var client : feignClientFactory.getContextNames()) {
+            var pool = pool(client);
+            if (pool != null) {
+                pools.put(client, pool);
+            }
+        }
+        return pools;
+    }
+
+    @ReadOperation
+    public InstrumentedHttpClientConnectionManager.PoolSnapshot pool(@Selector String client) {
+        if (!feignClientFactory.getContextNames().contains(client)) {
+            return null;
+        }
+        var manager = feignClientFactory.getInstanceWithoutAncestors(client, InstrumentedHttpClientConnectionManager.class);
+        if (manager != null) {
+            return manager.snapshot();
+        }
+        var pooled = feignClientFactory.getInstanceWithoutAncestors(client, PooledHttpClient.class);
+        return pooled != null ? pooled.snapshot() : null;
+    }
+}
@@ -1,36 +1,33 @@
 package tech.elethoughts.courses.cloud.feign.infrastructure;
 
-import org.springframework.core.io.DefaultResourceLoader;
-import org.springframework.core.io.ResourceLoader;
+import io.micrometer.core.instrument.MeterRegistry;
 
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-import java.security.KeyStore;
 import java.security.SecureRandom;
 
 public class FeignSslContextFactory {
 
-    private final ResourceLoader resourceLoader = new DefaultResourceLoader();
     private final FeignClientProperties properties;
+    private final SslContextRegistry registry;
+    private final MeterRegistry meterRegistry;
+    private TlsHandshakeMetrics metrics;
 
-    public FeignSslContextFactory(FeignClientProperties properties) {
-        this.properties = properties;
+    public FeignSslContextFactory(FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this(properties, SslContextRegistry.shared(), meterRegistry);
     }
 
-    public SSLContext createSslContext() throws Exception {
-        var keyStore = properties.getKeyStore();
-        var trustStore = properties.getTrustStore();
+    FeignSslContextFactory(FeignClientProperties properties, SslContextRegistry registry, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.meterRegistry = meterRegistry;
+    }
 
-        if (keyStore == null && trustStore == null) {
-            return SSLContext.getDefault();
+    public synchronized SSLContext createSslContext() throws Exception {
+        if (metrics == null) {
+            metrics = new TlsHandshakeMetrics(meterRegistry, properties.getClientName());
         }
-
-        var ssl = SSLContext.getInstance("TLS");
-        ssl.init(loadKeyManagers(keyStore), loadTrustManagers(trustStore), new SecureRandom());
-        return ssl;
+        return InstrumentedSslContext.wrap(registry.getOrCreate(properties), metrics);
     }
 
     public SSLContext createDisabledSslContext() {
@@ -42,34 +39,4 @@ public class FeignSslContextFactory {
             throw new IllegalStateException("Error creating disabled SSLContext", e);
         }
     }
-
-    private KeyManager[] loadKeyManagers(String keyStore) throws Exception {
-        if (keyStore == null) {
-            return null;
-        }
-        var resource = resourceLoader.getResource(keyStore);
-        var pwd = properties.getKeyStorePassword();
-        var ks = KeyStore.getInstance("PKCS12");
-        try (var is = resource.getInputStream()) {
-            ks.load(is, pwd);
-        }
-        var kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-        kmf.init(ks, pwd);
-        return kmf.getKeyManagers();
-    }
-
-    private TrustManager[] loadTrustManagers(String trustStore) throws Exception {
-        if (trustStore == null) {
-            return null;
-        }
-        var resource = resourceLoader.getResource(trustStore);
-        var pwd = properties.getTrustStorePassword();
-        var ks = KeyStore.getInstance("PKCS12");
-        try (var is = resource.getInputStream()) {
-            ks.load(is, pwd);
-        }
-        var tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(ks);
-        return tmf.getTrustManagers();
-    }
 }
@@ -0,0 +1,221 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends a second copy of a slow GET/HEAD request and returns whichever response comes first.
+ * <p>
+ * The request runs on a virtual thread; if it hasn't answered after the hedge delay, the same request is sent
+ * again and the first response wins. The other attempt is cancelled: its thread is interrupted, which makes the
+ * JDK {@code HttpClient} reset the stream (on HTTP/2 the connection is kept), and a response that still arrives
+ * is closed. The delay is {@code hedging.delay} if set, otherwise the {@code hedging.percentile} (default p95)
+ * of the last {@code hedging.window} call latencies, never below {@code hedging.min-delay}.
+ * <p>
+ * Hedges draw from a {@link RetryBudget}: each call adds {@code hedging.budget.ratio} (at most 1) of a token, so
+ * hedging adds that share of the calls at most and never doubles the load. A request that fails before the
+ * delay is not hedged; failures are left to the retryer. Other methods go straight to the delegate.
+ */
+public class HedgingClient implements DelegatingClient {
+
+    private final Client delegate;
+    private final Duration fixedDelay;
+    private final long minDelayNanos;
+    private final LatencyWindow latencies;
+    private final RetryBudget budget;
+    private final ExecutorService executor;
+    private final Counter hedgesWon;
+    private final Counter hedgesLost;
+    private final Counter skipped;
+
+    public HedgingClient(Client delegate, FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.fixedDelay = properties.getDuration("hedging.delay", null);
+        this.minDelayNanos = properties.getDuration("hedging.min-delay", Duration.ofMillis(50)).toNanos();
+        this.latencies = new LatencyWindow(properties.getInt("hedging.window", 1000),
+                Double.parseDouble(properties.getString("hedging.percentile", "0.95")));
+        this.budget = new RetryBudget(
+                Math.min(1.0, Double.parseDouble(properties.getString("hedging.budget.ratio", "0.1"))),
+                properties.getInt("hedging.budget.max-tokens", 10));
+        var client = properties.getClientName();
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(client + "-hedge-", 0).factory());
+
+        this.hedgesWon = hedges(meterRegistry, client, "won");
+        this.hedgesLost = hedges(meterRegistry, client, "lost");
+        this.skipped = Counter.builder("feign.client.hedging.skipped")
+                .description("Slow requests not hedged because the hedge budget was spent")
+                .tag("client", client)
+                .register(meterRegistry);
+        TimeGauge.builder("feign.client.hedging.delay", this, TimeUnit.NANOSECONDS, HedgingClient::hedgeDelayNanos)
+                .description("Current delay before a request is hedged")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    private static Counter hedges(MeterRegistry meterRegistry, String client, String outcome) {
+        return Counter.builder("feign.client.hedging.hedges")
+                .description("Hedge requests sent, by whether they answered first")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Client delegate() {
+        return delegate;
+    }
+
+    public long hedgeDelayNanos() {
+        if (fixedDelay != null) {
+            return fixedDelay.toNanos();
+        }
+        return Math.max(minDelayNanos, latencies.quantile());
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        var method = request.httpMethod();
+        if (method != Request.HttpMethod.GET && method != Request.HttpMethod.HEAD) {
+            return delegate.execute(request, options);
+        }
+        budget.onCall();
+
+        var race = new Race();
+        long start = System.nanoTime();
+        var primary = executor.submit(() -> race.run(request, options, false));
+        Future<?> hedge = null;
+        try {
+            try {
+                return answered(start, race.winner.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // Slow: hedge below
+            }
+            if (race.winner.isDone()) {
+                return answered(start, race.winner.get());
+            }
+            if (!budget.tryAcquireRetry()) {
+                skipped.increment();
+                return answered(start, race.winner.get());
+            }
+            race.attempts.incrementAndGet();
+            hedge = executor.submit(() -> race.run(request, options, true));
+            var winner = race.winner.get();
+            (winner.hedge() ? hedgesWon : hedgesLost).increment();
+            return answered(start, winner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for hedged request");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            // No-op for the attempt that won; interrupts the other one, which cancels its exchange
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Records one latency per call, from the first attempt's start to the winning response. Per-attempt samples
+     * would only ever hold the fast ones, since a hedged call cancels its slow attempt before it answers, and
+     * the delay would keep shrinking.
+     */
+    private Response answered(long startNanos, Result winner) {
+        latencies.record(System.nanoTime() - startNanos);
+        return winner.response();
+    }
+
+    private record Result(Response response, boolean hedge) {
+    }
+
+    /**
+     * The attempts of one call. The first response completes {@link #winner}; failures only complete it once
+     * every attempt sent so far has failed, so a failed primary still waits for its hedge.
+     */
+    private final class Race {
+
+        final CompletableFuture<Result> winner = new CompletableFuture<>();
+        final AtomicInteger attempts = new AtomicInteger(1);
+        final AtomicInteger failures = new AtomicInteger();
+
+        void run(Request request, Request.Options options, boolean hedge) {
+            Response response;
+            try {
+                response = delegate.execute(request, options);
+            } catch (IOException | RuntimeException e) {
+                if (failures.incrementAndGet() >= attempts.get()) {
+                    winner.completeExceptionally(e);
+                }
+                return;
+            }
+            if (!winner.complete(new Result(response, hedge))) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Last {@code size} latencies in a ring; the quantile is recomputed every {@code size / 10} samples from a
+     * sorted copy, so reading it on the request path is a volatile read.
+     */
+    static final class LatencyWindow {
+
+        private final AtomicLongArray samples;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final double percentile;
+        private final int recomputeEvery;
+        private volatile long quantile;
+
+        LatencyWindow(int size, double percentile) {
+            this.samples = new AtomicLongArray(size);
+            this.percentile = percentile;
+            this.recomputeEvery = Math.max(1, size / 10);
+        }
+
+        void record(long nanos) {
+            int count = cursor.getAndIncrement();
+            samples.set(Math.floorMod(count, samples.length()), nanos);
+            if ((count + 1) % recomputeEvery == 0) {
+                recompute(Math.min(count + 1, samples.length()));
+            }
+        }
+
+        long quantile() {
+            return quantile;
+        }
+
+        private void recompute(int filled) {
+            var sorted = new long[filled];
+            for (int i = 0; i < filled; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            quantile = sorted[Math.min(filled - 1, (int) Math.ceil(percentile * filled) - 1)];
+        }
+    }
+}
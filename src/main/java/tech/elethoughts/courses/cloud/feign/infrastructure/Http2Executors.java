@@ -0,0 +1,116 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors for the JDK {@code HttpClient}, which runs response handling and async completions on them.
+ * <p>
+ * {@code http2.executor.type} picks one per client:
+ * <ul>
+ *   <li>{@code default}: the client's own unbounded cached pool, one platform thread per concurrent exchange;</li>
+ *   <li>{@code virtual}: a virtual thread per task (the default with {@code spring.threads.virtual.enabled});</li>
+ *   <li>{@code bounded}: at most {@code http2.executor.max-threads} platform threads and a queue of
+ *       {@code http2.executor.queue-capacity} tasks; tasks beyond that run on a virtual thread of their own and
+ *       are counted as {@code feign.client.http2.executor.overflow};</li>
+ *   <li>{@code shared}: one bounded pool for every client choosing it, sized by
+ *       {@code spring.cloud.openfeign.http2client.executor.*}, created on first use and never shut down.</li>
+ * </ul>
+ * Executors are published through {@link ExecutorServiceMetrics} as {@code feign.client.http2.executor.*}: queued
+ * tasks, active and pool threads for the pools, and for all of them the time tasks wait in the queue
+ * ({@code idle}) and run ({@code executor}).
+ * <p>
+ * The pools never reject: the JDK client does not fail just the exchange whose task is rejected, it aborts every
+ * pending exchange and closes, so one burst would take the client (or shard, or every {@code shared} client) down
+ * until restart.
+ */
+final class Http2Executors {
+
+    static final String SHARED_PREFIX = "spring.cloud.openfeign.http2client.executor.";
+
+    private static ExecutorService shared;
+
+    private Http2Executors() {
+    }
+
+    /**
+     * @return the executor to give {@code HttpClient.Builder}, or null to keep the client's default one
+     */
+    static ExecutorService create(FeignClientProperties properties, Environment env, MeterRegistry meterRegistry) {
+        var client = properties.getClientName();
+        var type = properties.getString("http2.executor.type", Threading.VIRTUAL.isActive(env) ? "virtual" : "default");
+        return switch (type) {
+            case "default" -> null;
+            case "virtual" -> monitor(Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name(client + "-http2-", 0).factory()), client, meterRegistry);
+            case "bounded" -> monitor(bounded(client + "-http2-",
+                    properties.getInt("http2.executor.max-threads", 16),
+                    properties.getInt("http2.executor.queue-capacity", 1000),
+                    properties.getDuration("http2.executor.keep-alive", Duration.ofSeconds(60)),
+                    overflow(client, meterRegistry)), client, meterRegistry);
+            case "shared" -> shared(env, meterRegistry);
+            default -> throw new IllegalArgumentException("Unknown http2.executor.type for " + client + ": " + type);
+        };
+    }
+
+    static boolean isShared(FeignClientProperties properties) {
+        return "shared".equals(properties.getString("http2.executor.type"));
+    }
+
+    private static synchronized ExecutorService shared(Environment env, MeterRegistry meterRegistry) {
+        if (shared == null) {
+            shared = monitor(bounded("feign-http2-shared-",
+                    env.getProperty(SHARED_PREFIX + "max-threads", Integer.class, 32),
+                    env.getProperty(SHARED_PREFIX + "queue-capacity", Integer.class, 2000),
+                    env.getProperty(SHARED_PREFIX + "keep-alive", Duration.class, Duration.ofSeconds(60)),
+                    overflow("shared", meterRegistry)), "shared", meterRegistry);
+        }
+        return shared;
+    }
+
+    private static ThreadPoolExecutor bounded(String threadPrefix, int maxThreads, int queueCapacity, Duration keepAlive,
+                                              Counter overflow) {
+        var executor = new ThreadPoolExecutor(maxThreads, maxThreads, keepAlive.toMillis(), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), Thread.ofPlatform().daemon().name(threadPrefix, 0).factory(),
+                overflowToVirtualThreads(Thread.ofVirtual().name(threadPrefix + "overflow-", 0).factory(), overflow));
+        // Threads are started up to max-threads before tasks queue, and stop again when idle
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static RejectedExecutionHandler overflowToVirtualThreads(ThreadFactory threads, Counter overflow) {
+        return (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor shut down");
+            }
+            overflow.increment();
+            threads.newThread(task).start();
+        };
+    }
+
+    private static Counter overflow(String client, MeterRegistry meterRegistry) {
+        return Counter.builder("feign.client.http2.executor.overflow")
+                .description("Tasks run on a virtual thread because the pool and its queue were full")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    private static ExecutorService monitor(ExecutorService executor, String client, MeterRegistry meterRegistry) {
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, client + "-http2", "feign.client.http2",
+                Tags.of("client", client));
+    }
+}
@@ -0,0 +1,205 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.io.ManagedHttpClientConnection;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.ProtocolVersion;
+import org.apache.hc.core5.http.io.HttpConnectionFactory;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Identifiable;
+import org.apache.hc.core5.util.Timeout;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+/**
+ * Counts the connections the HC5 pool opens and the ones it finds stale, as {@code feign.client.pool.connections}
+ * with {@code event=created} and {@code event=stale} like {@link PooledHttpClient}.
+ * <p>
+ * The pool only asks a connection whether it is stale when leasing it after {@code validate-after-inactivity}, and
+ * closes it when it is: {@code stale} therefore counts the connections the server (or a load balancer) dropped while
+ * they sat idle, which would otherwise have failed the request with a {@code NoHttpResponseException}.
+ */
+class InstrumentedConnectionFactory implements HttpConnectionFactory<ManagedHttpClientConnection> {
+
+    private final HttpConnectionFactory<ManagedHttpClientConnection> delegate;
+    private final Counter created;
+    private final Counter stale;
+
+    InstrumentedConnectionFactory(String clientName, MeterRegistry meterRegistry) {
+        this(ManagedHttpClientConnectionFactory.INSTANCE, clientName, meterRegistry);
+    }
+
+    InstrumentedConnectionFactory(HttpConnectionFactory<ManagedHttpClientConnection> delegate, String clientName,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.created = connections("created", clientName, meterRegistry);
+        this.stale = connections("stale", clientName, meterRegistry);
+    }
+
+    private static Counter connections(String event, String clientName, MeterRegistry meterRegistry) {
+        return Counter.builder("feign.client.pool.connections")
+                .description("Pooled connections created, reused and closed")
+                .tag("client", clientName)
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ManagedHttpClientConnection createConnection(Socket socket) throws IOException {
+        created.increment();
+        return new StaleCountingConnection(delegate.createConnection(socket));
+    }
+
+    @Override
+    public ManagedHttpClientConnection createConnection(SSLSocket sslSocket, Socket socket) throws IOException {
+        created.increment();
+        return new StaleCountingConnection(delegate.createConnection(sslSocket, socket));
+    }
+
+    private final class StaleCountingConnection implements ManagedHttpClientConnection, Identifiable {
+
+        private final ManagedHttpClientConnection connection;
+
+        StaleCountingConnection(ManagedHttpClientConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean isStale() throws IOException {
+            boolean isStale = connection.isStale();
+            if (isStale) {
+                stale.increment();
+            }
+            return isStale;
+        }
+
+        @Override
+        public String getId() {
+            return connection instanceof Identifiable identifiable ? identifiable.getId() : null;
+        }
+
+        @Override
+        public void bind(Socket socket) throws IOException {
+            connection.bind(socket);
+        }
+
+        @Override
+        public void bind(SSLSocket sslSocket, Socket socket) throws IOException {
+            connection.bind(sslSocket, socket);
+        }
+
+        @Override
+        public Socket getSocket() {
+            return connection.getSocket();
+        }
+
+        @Override
+        public SSLSession getSSLSession() {
+            return connection.getSSLSession();
+        }
+
+        @Override
+        public void passivate() {
+            connection.passivate();
+        }
+
+        @Override
+        public void activate() {
+            connection.activate();
+        }
+
+        @Override
+        public boolean isConsistent() {
+            return connection.isConsistent();
+        }
+
+        @Override
+        public void sendRequestHeader(ClassicHttpRequest request) throws HttpException, IOException {
+            connection.sendRequestHeader(request);
+        }
+
+        @Override
+        public void terminateRequest(ClassicHttpRequest request) throws HttpException, IOException {
+            connection.terminateRequest(request);
+        }
+
+        @Override
+        public void sendRequestEntity(ClassicHttpRequest request) throws HttpException, IOException {
+            connection.sendRequestEntity(request);
+        }
+
+        @Override
+        public ClassicHttpResponse receiveResponseHeader() throws HttpException, IOException {
+            return connection.receiveResponseHeader();
+        }
+
+        @Override
+        public void receiveResponseEntity(ClassicHttpResponse response) throws HttpException, IOException {
+            connection.receiveResponseEntity(response);
+        }
+
+        @Override
+        public boolean isDataAvailable(Timeout timeout) throws IOException {
+            return connection.isDataAvailable(timeout);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            connection.flush();
+        }
+
+        @Override
+        public EndpointDetails getEndpointDetails() {
+            return connection.getEndpointDetails();
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return connection.getLocalAddress();
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return connection.getRemoteAddress();
+        }
+
+        @Override
+        public ProtocolVersion getProtocolVersion() {
+            return connection.getProtocolVersion();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return connection.isOpen();
+        }
+
+        @Override
+        public Timeout getSocketTimeout() {
+            return connection.getSocketTimeout();
+        }
+
+        @Override
+        public void setSocketTimeout(Timeout timeout) {
+            connection.setSocketTimeout(timeout);
+        }
+
+        @Override
+        public void close(CloseMode closeMode) {
+            connection.close(closeMode);
+        }
+
+        @Override
+        public void close() throws IOException {
+            connection.close();
+        }
+    }
+}
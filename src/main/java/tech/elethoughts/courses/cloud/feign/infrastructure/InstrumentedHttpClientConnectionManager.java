@@ -0,0 +1,316 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.EndpointInfo;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.impl.io.HttpRequestExecutor;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link PoolingHttpClientConnectionManager} publishing its pool state per client and per route, and timing how
+ * long each request waits to lease a connection.
+ * <p>
+ * Gauges read {@link #getTotalStats()} and {@link #getStats(HttpRoute)} when scraped; route gauges are registered
+ * on the first lease for the route. The lease wait is timed around {@link LeaseRequest#get(Timeout)}, which is
+ * where the exec chain blocks for up to {@code connection-request-timeout} when the pool is exhausted.
+ * <p>
+ * Implements {@link ConnPoolControl} like the pool itself, so {@code HttpClientBuilder} still starts its idle and
+ * expired connection evictor for it.
+ * <p>
+ * {@link RouteSettings} are applied per target host on the first lease of each route: {@code maxConnections} through
+ * {@link #setMaxPerRoute(HttpRoute, int)}, and {@code socketTimeout} on every leased endpoint, where it replaces the
+ * response timeout Feign sets on each request (its read timeout). TTL and validation are resolved by the pool's
+ * {@code ConnectionConfig} resolver, see {@link FeignApacheHttpClient5Config}.
+ */
+public class InstrumentedHttpClientConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+
+    public record PoolSnapshot(int leased, int available, int pending, int max, Map<String, PoolSnapshot> routes) {
+
+        static PoolSnapshot of(PoolStats stats, Map<String, PoolSnapshot> routes) {
+            return new PoolSnapshot(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(), routes);
+        }
+    }
+
+    /**
+     * Overrides for one target host; null fields keep the client-wide value.
+     */
+    public record RouteSettings(Integer maxConnections, Duration socketTimeout, Duration validateAfterInactivity,
+                                Duration timeToLive) {
+    }
+
+    private final PoolingHttpClientConnectionManager pool;
+    private final String clientName;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteSettings> routeSettings;
+    private final Map<HttpRoute, Optional<RouteSettings>> knownRoutes = new ConcurrentHashMap<>();
+    private final Timer acquired;
+    private final Timer timedOut;
+
+    public InstrumentedHttpClientConnectionManager(PoolingHttpClientConnectionManager pool, String clientName,
+                                                   MeterRegistry meterRegistry) {
+        this(pool, clientName, meterRegistry, Map.of());
+    }
+
+    /**
+     * @param routeSettings overrides by lower-case target host name
+     */
+    public InstrumentedHttpClientConnectionManager(PoolingHttpClientConnectionManager pool, String clientName,
+                                                   MeterRegistry meterRegistry, Map<String, RouteSettings> routeSettings) {
+        this.pool = pool;
+        this.routeSettings = Map.copyOf(routeSettings);
+        this.clientName = clientName;
+        this.meterRegistry = meterRegistry;
+        this.acquired = leaseWait("acquired");
+        this.timedOut = leaseWait("timeout");
+        var tags = Tags.of("client", clientName);
+        poolGauges("feign.client.pool", tags, this::getTotalStats);
+    }
+
+    private Timer leaseWait(String outcome) {
+        return Timer.builder("feign.client.pool.lease.wait")
+                .description("Time waiting to lease a pooled connection")
+                .tag("client", clientName)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void poolGauges(String prefix, Tags tags, Supplier<PoolStats> stats) {
+        gauge(prefix + ".leased", "Connections leased to requests", tags, stats, PoolStats::getLeased);
+        gauge(prefix + ".available", "Idle connections ready for reuse", tags, stats, PoolStats::getAvailable);
+        gauge(prefix + ".pending", "Requests waiting for a connection", tags, stats, PoolStats::getPending);
+        gauge(prefix + ".max", "Maximum connections", tags, stats, PoolStats::getMax);
+    }
+
+    private void gauge(String name, String description, Tags tags, Supplier<PoolStats> stats,
+                       ToIntFunction<PoolStats> value) {
+        // The supplier is only referenced by the gauge: keep it from being collected
+        Gauge.builder(name, stats, s -> value.applyAsInt(s.get()))
+                .description(description)
+                .tags(tags)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    public PoolSnapshot snapshot() {
+        var routes = new TreeMap<String, PoolSnapshot>();
+        for (var route : pool.getRoutes()) {
+            routes.put(routeName(route), PoolSnapshot.of(pool.getStats(route), Map.of()));
+        }
+        return PoolSnapshot.of(pool.getTotalStats(), routes);
+    }
+
+    static String hostName(HttpRoute route) {
+        return route.getTargetHost().getHostName().toLowerCase(Locale.ROOT);
+    }
+
+    static String routeName(HttpRoute route) {
+        var proxy = route.getProxyHost();
+        return proxy == null ? route.getTargetHost().toURI() : route.getTargetHost().toURI() + " via " + proxy.toURI();
+    }
+
+    // Blocks concurrent first leases of a route until its gauges and limit are in place
+    private RouteSettings knownRoute(HttpRoute route) {
+        return knownRoutes.computeIfAbsent(route, r -> {
+            poolGauges("feign.client.pool.route", Tags.of("client", clientName, "route", routeName(r)),
+                    () -> pool.getStats(r));
+            var settings = routeSettings.get(hostName(r));
+            if (settings != null && settings.maxConnections() != null) {
+                pool.setMaxPerRoute(r, settings.maxConnections());
+            }
+            return Optional.ofNullable(settings);
+        }).orElse(null);
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        var settings = knownRoute(route);
+        var socketTimeout = settings != null && settings.socketTimeout() != null
+                ? Timeout.of(settings.socketTimeout()) : null;
+        var lease = pool.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    var endpoint = lease.get(timeout);
+                    acquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return socketTimeout != null ? new RouteTimeoutEndpoint(endpoint, socketTimeout) : endpoint;
+                } catch (TimeoutException e) {
+                    timedOut.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return lease.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        pool.release(RouteTimeoutEndpoint.unwrap(endpoint), newState, validDuration);
+    }
+
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+        pool.connect(RouteTimeoutEndpoint.unwrap(endpoint), connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        pool.upgrade(RouteTimeoutEndpoint.unwrap(endpoint), context);
+    }
+
+    @Override
+    public void close(CloseMode closeMode) {
+        pool.close(closeMode);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    @Override
+    public void setMaxTotal(int max) {
+        pool.setMaxTotal(max);
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return pool.getMaxTotal();
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        pool.setDefaultMaxPerRoute(max);
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return pool.getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public void setMaxPerRoute(HttpRoute route, int max) {
+        pool.setMaxPerRoute(route, max);
+    }
+
+    @Override
+    public int getMaxPerRoute(HttpRoute route) {
+        return pool.getMaxPerRoute(route);
+    }
+
+    @Override
+    public void closeIdle(TimeValue idleTime) {
+        pool.closeIdle(idleTime);
+    }
+
+    @Override
+    public void closeExpired() {
+        pool.closeExpired();
+    }
+
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return pool.getRoutes();
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        return pool.getTotalStats();
+    }
+
+    @Override
+    public PoolStats getStats(HttpRoute route) {
+        return pool.getStats(route);
+    }
+
+    /**
+     * Applies the route's socket timeout instead of the one the exec chain sets before each request. The pool only
+     * accepts its own endpoints back, hence {@link #unwrap(ConnectionEndpoint)}.
+     */
+    private static final class RouteTimeoutEndpoint extends ConnectionEndpoint {
+
+        private final ConnectionEndpoint delegate;
+        private final Timeout socketTimeout;
+
+        RouteTimeoutEndpoint(ConnectionEndpoint delegate, Timeout socketTimeout) {
+            this.delegate = delegate;
+            this.socketTimeout = socketTimeout;
+        }
+
+        static ConnectionEndpoint unwrap(ConnectionEndpoint endpoint) {
+            return endpoint instanceof RouteTimeoutEndpoint wrapper ? wrapper.delegate : endpoint;
+        }
+
+        @Override
+        public ClassicHttpResponse execute(String id, ClassicHttpRequest request, HttpRequestExecutor executor,
+                                           HttpContext context) throws IOException, HttpException {
+            return delegate.execute(id, request, executor, context);
+        }
+
+        @Override
+        public ClassicHttpResponse execute(String id, ClassicHttpRequest request, RequestExecutor executor,
+                                           HttpContext context) throws IOException, HttpException {
+            return delegate.execute(id, request, executor, context);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return delegate.isConnected();
+        }
+
+        @Override
+        public void setSocketTimeout(Timeout timeout) {
+            delegate.setSocketTimeout(socketTimeout);
+        }
+
+        @Override
+        public EndpointInfo getInfo() {
+            return delegate.getInfo();
+        }
+
+        @Override
+        public void close(CloseMode closeMode) {
+            delegate.close(closeMode);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
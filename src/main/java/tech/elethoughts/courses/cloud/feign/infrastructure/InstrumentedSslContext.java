@@ -0,0 +1,86 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+
+/**
+ * {@link SSLContext} view over an initialized context that reports every client handshake to
+ * {@link TlsHandshakeMetrics}. Sessions, key material and the session cache stay those of the delegate.
+ */
+public final class InstrumentedSslContext extends SSLContext {
+
+    private InstrumentedSslContext(SSLContext delegate, TlsHandshakeMetrics metrics) {
+        super(new Spi(delegate, metrics), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    public static SSLContext wrap(SSLContext delegate, TlsHandshakeMetrics metrics) {
+        return new InstrumentedSslContext(delegate, metrics);
+    }
+
+    private static final class Spi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final TlsHandshakeMetrics metrics;
+        private final SSLSocketFactory socketFactory;
+
+        Spi(SSLContext delegate, TlsHandshakeMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+            this.socketFactory = new InstrumentedSslSocketFactory(delegate.getSocketFactory(), metrics);
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom random) throws KeyManagementException {
+            throw new KeyManagementException("Instrumented SSLContext is already initialized");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return socketFactory;
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return new InstrumentedSslEngine(delegate.createSSLEngine(), metrics);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return new InstrumentedSslEngine(delegate.createSSLEngine(host, port), metrics);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.BiFunction;
+
+class InstrumentedSslEngine extends SSLEngine {
+
+    private final SSLEngine delegate;
+    private final TlsHandshakeMetrics metrics;
+    private boolean handshaking;
+    private long startMillis;
+    private long startNanos;
+
+    InstrumentedSslEngine(SSLEngine delegate, TlsHandshakeMetrics metrics) {
+        super(delegate.getPeerHost(), delegate.getPeerPort());
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SSLEngineResult wrap(ByteBuffer[] srcs, int offset, int length, ByteBuffer dst) throws SSLException {
+        boolean idle = isIdle();
+        long millis = idle ? System.currentTimeMillis() : 0;
+        long nanos = idle ? System.nanoTime() : 0;
+        return observe(idle, millis, nanos, delegate.wrap(srcs, offset, length, dst));
+    }
+
+    @Override
+    public SSLEngineResult unwrap(ByteBuffer src, ByteBuffer[] dsts, int offset, int length) throws SSLException {
+        boolean idle = isIdle();
+        long millis = idle ? System.currentTimeMillis() : 0;
+        long nanos = idle ? System.nanoTime() : 0;
+        return observe(idle, millis, nanos, delegate.unwrap(src, dsts, offset, length));
+    }
+
+    @Override
+    public void beginHandshake() throws SSLException {
+        synchronized (this) {
+            if (!handshaking) {
+                handshaking = true;
+                startMillis = System.currentTimeMillis();
+                startNanos = System.nanoTime();
+            }
+        }
+        delegate.beginHandshake();
+    }
+
+    private synchronized boolean isIdle() {
+        return !handshaking && delegate.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
+    }
+
+    /**
+     * A handshake starts when a wrap or unwrap takes the engine from {@code NOT_HANDSHAKING} into a handshaking
+     * state, and ends at the next {@code FINISHED}. TLS 1.3 post-handshake messages (NewSessionTicket) also report
+     * {@code FINISHED}, straight from {@code NOT_HANDSHAKING}: they are not handshakes and are ignored.
+     */
+    private SSLEngineResult observe(boolean wasIdle, long millis, long nanos, SSLEngineResult result) {
+        var status = result.getHandshakeStatus();
+        synchronized (this) {
+            if (!handshaking) {
+                if (wasIdle && status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                        && status != SSLEngineResult.HandshakeStatus.FINISHED) {
+                    handshaking = true;
+                    startMillis = millis;
+                    startNanos = nanos;
+                }
+                return result;
+            }
+            if (status != SSLEngineResult.HandshakeStatus.FINISHED) {
+                return result;
+            }
+            handshaking = false;
+            millis = startMillis;
+            nanos = startNanos;
+        }
+        metrics.handshakeCompleted(delegate.getSession(), millis, nanos);
+        return result;
+    }
+
+    @Override
+    public Runnable getDelegatedTask() {
+        return delegate.getDelegatedTask();
+    }
+
+    @Override
+    public void closeInbound() throws SSLException {
+        delegate.closeInbound();
+    }
+
+    @Override
+    public boolean isInboundDone() {
+        return delegate.isInboundDone();
+    }
+
+    @Override
+    public void closeOutbound() {
+        delegate.closeOutbound();
+    }
+
+    @Override
+    public boolean isOutboundDone() {
+        return delegate.isOutboundDone();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+        return delegate.getEnabledCipherSuites();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+        delegate.setEnabledCipherSuites(suites);
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+        return delegate.getSupportedProtocols();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+        return delegate.getEnabledProtocols();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+        delegate.setEnabledProtocols(protocols);
+    }
+
+    @Override
+    public SSLSession getSession() {
+        return delegate.getSession();
+    }
+
+    @Override
+    public SSLSession getHandshakeSession() {
+        return delegate.getHandshakeSession();
+    }
+
+    @Override
+    public SSLEngineResult.HandshakeStatus getHandshakeStatus() {
+        return delegate.getHandshakeStatus();
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+        delegate.setUseClientMode(mode);
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+        return delegate.getUseClientMode();
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+        delegate.setNeedClientAuth(need);
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+        return delegate.getNeedClientAuth();
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+        delegate.setWantClientAuth(want);
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+        return delegate.getWantClientAuth();
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+        delegate.setEnableSessionCreation(flag);
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+        return delegate.getEnableSessionCreation();
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+        return delegate.getSSLParameters();
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+        delegate.setSSLParameters(params);
+    }
+
+    @Override
+    public String getApplicationProtocol() {
+        return delegate.getApplicationProtocol();
+    }
+
+    @Override
+    public String getHandshakeApplicationProtocol() {
+        return delegate.getHandshakeApplicationProtocol();
+    }
+
+    @Override
+    public void setHandshakeApplicationProtocolSelector(BiFunction<SSLEngine, List<String>, String> selector) {
+        delegate.setHandshakeApplicationProtocolSelector(selector);
+    }
+
+    @Override
+    public BiFunction<SSLEngine, List<String>, String> getHandshakeApplicationProtocolSelector() {
+        return delegate.getHandshakeApplicationProtocolSelector();
+    }
+}
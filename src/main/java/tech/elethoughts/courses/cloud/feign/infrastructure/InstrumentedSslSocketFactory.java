@@ -0,0 +1,75 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+// Handshake time is measured from socket creation, so it includes the TCP connect for sockets not layered over a connected one.
+class InstrumentedSslSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final TlsHandshakeMetrics metrics;
+
+    InstrumentedSslSocketFactory(SSLSocketFactory delegate, TlsHandshakeMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return instrument(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return instrument(delegate.createSocket(s, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(Socket s, InputStream consumed, boolean autoClose) throws IOException {
+        return instrument(delegate.createSocket(s, consumed, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return instrument(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return instrument(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return instrument(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return instrument(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket instrument(Socket socket) {
+        if (socket instanceof SSLSocket sslSocket) {
+            long startMillis = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            sslSocket.addHandshakeCompletedListener(event ->
+                    metrics.handshakeCompleted(event.getSession(), startMillis, startNanos));
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,75 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Watches the directories holding key and trust stores and runs the registered reload actions
+ * on any change in them. Actions are expected to compare content themselves: editors and
+ * Kubernetes secret mounts replace files through renames and symlink swaps, so the event
+ * file name is not reliable.
+ */
+public final class KeyMaterialWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyMaterialWatcher.class);
+    private static final KeyMaterialWatcher SHARED = new KeyMaterialWatcher();
+
+    private final Map<Path, List<Runnable>> actionsByDirectory = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    public static KeyMaterialWatcher shared() {
+        return SHARED;
+    }
+
+    public synchronized void watch(Path file, Runnable onChange) {
+        var directory = file.toAbsolutePath().getParent();
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread.ofPlatform().daemon().name("feign-key-material-watcher").start(this::pollLoop);
+            }
+            if (!actionsByDirectory.containsKey(directory)) {
+                directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot watch " + directory, e);
+        }
+        actionsByDirectory.computeIfAbsent(directory, _ -> new CopyOnWriteArrayList<>()).add(onChange);
+    }
+
+    private void pollLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            key.pollEvents();
+            var actions = actionsByDirectory.getOrDefault((Path) key.watchable(), List.of());
+            for (var action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.warn("Key material reload failed: {}", e.getMessage());
+                }
+            }
+            key.reset();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PokeApiClientHc5Async extends PokeApiClient {
+
+    @GetMapping("/api/v2/pokemon/{name}")
+    CompletableFuture<Pokemon> getByNameAsync(@PathVariable("name") String name);
+}
@@ -0,0 +1,963 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP/1.1 {@link Client} on pooled keep-alive sockets, using only the JDK: a replacement for {@link Client.Proxied}
+ * taking the same {@link SSLSocketFactory}, {@link HostnameVerifier} and {@link Proxy}.
+ * <p>
+ * Each route (scheme, host, port) keeps up to {@code pool.max-per-route} connections, and the client leases at most
+ * {@code pool.max-total} at once; a request waits up to {@code pool.lease-timeout} for one. A connection goes back to
+ * the pool once its response body has been read to the end (or closed with a few KiB left, which are skipped).
+ * Idle connections are reused most recent first, checked for a close by the server when idle for longer than
+ * {@code pool.validate-after-inactivity}, and closed after {@code pool.idle-timeout} or {@code pool.time-to-live}
+ * by a background evictor running every {@code pool.eviction-interval}. A GET, HEAD, PUT or DELETE that fails on a
+ * reused connection before any response byte arrived is sent once more on a new connection.
+ * <p>
+ * Behind an HTTP proxy, {@code http} requests are sent to the proxy in absolute form and {@code https} ones go
+ * through a {@code CONNECT} tunnel. As with {@code HttpURLConnection}, {@code gzip} and {@code deflate} bodies are
+ * compressed and decompressed according to {@code Content-Encoding}, and GET/HEAD redirects are followed when
+ * {@link Request.Options#isFollowRedirects()}, without {@code Authorization}, {@code Cookie} and {@code Host} once
+ * they lead to another origin.
+ * <p>
+ * The pool is published with the same {@code feign.client.pool.*} meters as the HC5 pool, plus
+ * {@code feign.client.pool.connections} counting connections {@code created}, {@code reused} and closed
+ * ({@code expired}, {@code stale}, {@code discarded}).
+ */
+public class PooledHttpClient implements Client, Closeable {
+
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_HEADER_LINES = 200;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int DRAIN_ON_CLOSE_BYTES = 8192;
+    private static final Set<String> ORIGIN_HEADERS = Set.of("Authorization", "Cookie", "Host");
+    private static final Set<String> RETRIABLE_ON_STALE = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+
+    private record Route(String scheme, String host, int port) {
+
+        boolean secure() {
+            return "https".equals(scheme);
+        }
+
+        String authority() {
+            return host + ":" + port;
+        }
+
+        @Override
+        public String toString() {
+            return scheme + "://" + authority();
+        }
+    }
+
+    private final SSLSocketFactory sslSocketFactory;
+    private final HostnameVerifier hostnameVerifier;
+    private final Proxy proxy;
+    private final String clientName;
+    private final MeterRegistry meterRegistry;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final long timeToLiveNanos;
+    private final long idleTimeoutNanos;
+    private final long validateAfterInactivityNanos;
+    private final Duration leaseTimeout;
+
+    private final Semaphore totalLeases;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<Route, RoutePool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final Timer acquired;
+    private final Timer timedOut;
+    private final Counter created;
+    private final Counter reused;
+    private final Counter expired;
+    private final Counter stale;
+    private final Counter discarded;
+
+    public PooledHttpClient(SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier, Proxy proxy,
+                            FeignClientProperties properties, FeignHttpClientProperties httpClientProperties,
+                            MeterRegistry meterRegistry) {
+        this.sslSocketFactory = sslSocketFactory != null ? sslSocketFactory : (SSLSocketFactory) SSLSocketFactory.getDefault();
+        this.hostnameVerifier = hostnameVerifier;
+        this.proxy = proxy != null ? proxy : Proxy.NO_PROXY;
+        this.clientName = properties.getClientName();
+        this.meterRegistry = meterRegistry;
+        this.maxTotal = properties.getInt("pool.max-total", httpClientProperties.getMaxConnections());
+        this.maxPerRoute = properties.getInt("pool.max-per-route", httpClientProperties.getMaxConnectionsPerRoute());
+        this.timeToLiveNanos = properties.getDuration("pool.time-to-live", Duration.ofMillis(
+                httpClientProperties.getTimeToLiveUnit().toMillis(httpClientProperties.getTimeToLive()))).toNanos();
+        this.idleTimeoutNanos = properties.getDuration("pool.idle-timeout", Duration.ofSeconds(30)).toNanos();
+        this.validateAfterInactivityNanos = properties.getDuration("pool.validate-after-inactivity",
+                Duration.ofSeconds(2)).toNanos();
+        this.leaseTimeout = properties.getDuration("pool.lease-timeout", Duration.ofSeconds(5));
+        this.totalLeases = new Semaphore(maxTotal);
+
+        this.acquired = leaseWait("acquired");
+        this.timedOut = leaseWait("timeout");
+        this.created = connections("created");
+        this.reused = connections("reused");
+        this.expired = connections("expired");
+        this.stale = connections("stale");
+        this.discarded = connections("discarded");
+        var tags = Tags.of("client", clientName);
+        gauge("feign.client.pool.leased", "Connections leased to requests", tags, this, c -> c.maxTotal - c.totalLeases.availablePermits());
+        gauge("feign.client.pool.available", "Idle connections ready for reuse", tags, this, c -> c.pools.values().stream().mapToInt(p -> p.idle.size()).sum());
+        gauge("feign.client.pool.pending", "Requests waiting for a connection", tags, this, c -> c.pending.get());
+        gauge("feign.client.pool.max", "Maximum connections", tags, this, c -> c.maxTotal);
+
+        var evictionInterval = properties.getDuration("pool.eviction-interval", Duration.ofSeconds(5));
+        this.evictor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name(clientName + "-pool-evictor").factory());
+        evictor.scheduleWithFixedDelay(this::evictIdle, evictionInterval.toMillis(), evictionInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private Timer leaseWait(String outcome) {
+        return Timer.builder("feign.client.pool.lease.wait")
+                .description("Time waiting to lease a pooled connection")
+                .tag("client", clientName)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Counter connections(String event) {
+        return Counter.builder("feign.client.pool.connections")
+                .description("Pooled connections created, reused and closed")
+                .tag("client", clientName)
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    private <T> void gauge(String name, String description, Tags tags, T target, ToIntFunction<T> value) {
+        Gauge.builder(name, target, value::applyAsInt)
+                .description(description)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        var method = request.httpMethod().name();
+        var uri = URI.create(request.url());
+        validateHeaders(request.headers());
+        var headers = request.headers();
+        var response = exchange(request, method, uri, headers, requestBody(request), options);
+        for (int redirects = 0; redirects < MAX_REDIRECTS && options.isFollowRedirects()
+                && isRedirect(response.status()) && ("GET".equals(method) || "HEAD".equals(method)); redirects++) {
+            var location = header(response.headers(), "Location");
+            if (location == null) {
+                break;
+            }
+            response.close();
+            var target = uri.resolve(location);
+            if (!route(target).equals(route(uri))) {
+                headers = withoutOriginHeaders(headers);
+            }
+            uri = target;
+            response = exchange(request, method, uri, headers, null, options);
+        }
+        return response;
+    }
+
+    /**
+     * Credentials and the {@code Host} of the original origin are not sent to another one, as with
+     * {@code HttpURLConnection} and HC5.
+     */
+    private static Map<String, Collection<String>> withoutOriginHeaders(Map<String, Collection<String>> headers) {
+        var kept = new TreeMap<String, Collection<String>>(String.CASE_INSENSITIVE_ORDER);
+        kept.putAll(headers);
+        ORIGIN_HEADERS.forEach(kept::remove);
+        return kept;
+    }
+
+    /**
+     * Headers are written as-is: like {@code HttpURLConnection}, refuse anything that would end the header line early
+     * and inject headers or a second request.
+     */
+    private static void validateHeaders(Map<String, Collection<String>> headers) {
+        for (var entry : headers.entrySet()) {
+            var name = entry.getKey();
+            if (name == null || name.isEmpty() || !name.chars().allMatch(PooledHttpClient::isTokenChar)) {
+                throw new IllegalArgumentException("Invalid header name: " + name);
+            }
+            for (var value : entry.getValue()) {
+                if (value != null && value.chars().anyMatch(c -> c == '\r' || c == '\n' || c == 0)) {
+                    throw new IllegalArgumentException("Invalid value for header " + name + ": CR, LF or NUL");
+                }
+            }
+        }
+    }
+
+    private static boolean isTokenChar(int c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private Response exchange(Request request, String method, URI uri, Map<String, Collection<String>> headers,
+                              byte[] body, Request.Options options) throws IOException {
+        var route = route(uri);
+        var pool = pools.computeIfAbsent(route, RoutePool::new);
+        boolean fresh = false;
+        while (true) {
+            var connection = lease(pool, options, fresh);
+            try {
+                write(connection, method, uri, headers, body);
+                return read(connection, request, method, options);
+            } catch (IOException | RuntimeException e) {
+                discard(connection);
+                if (e instanceof IOException io && isClosedBeforeResponse(io) && connection.reused
+                        && !connection.responded && !fresh && RETRIABLE_ON_STALE.contains(method)) {
+                    // The server closed the idle connection before we noticed
+                    stale.increment();
+                    fresh = true;
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Only a connection the server closed or reset before sending anything, like HC5's
+     * {@code NoHttpResponseException}. A read timeout means the server may still be processing the request: resending
+     * it would double the load on a slow upstream and the caller's wait.
+     */
+    private static boolean isClosedBeforeResponse(IOException e) {
+        return !(e instanceof InterruptedIOException)
+                && (e instanceof NoResponseException || e instanceof SocketException);
+    }
+
+    private static Route route(URI uri) {
+        var scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase();
+        if (!"http".equals(scheme) && !"https".equals(scheme)) {
+            throw new IllegalArgumentException("Unsupported scheme: " + uri);
+        }
+        int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(scheme) ? 443 : 80;
+        return new Route(scheme, uri.getHost(), port);
+    }
+
+    // ---- Pool
+
+    private final class RoutePool {
+
+        final Route route;
+        final Semaphore leases = new Semaphore(maxPerRoute);
+        final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger pending = new AtomicInteger();
+
+        RoutePool(Route route) {
+            this.route = route;
+            var tags = Tags.of("client", clientName, "route", route.toString());
+            gauge("feign.client.pool.route.leased", "Connections leased to requests", tags, this, p -> maxPerRoute - p.leases.availablePermits());
+            gauge("feign.client.pool.route.available", "Idle connections ready for reuse", tags, this, p -> p.idle.size());
+            gauge("feign.client.pool.route.pending", "Requests waiting for a connection", tags, this, p -> p.pending.get());
+            gauge("feign.client.pool.route.max", "Maximum connections", tags, this, _ -> maxPerRoute);
+        }
+
+        InstrumentedHttpClientConnectionManager.PoolSnapshot snapshot() {
+            return new InstrumentedHttpClientConnectionManager.PoolSnapshot(maxPerRoute - leases.availablePermits(),
+                    idle.size(), pending.get(), maxPerRoute, Map.of());
+        }
+    }
+
+    private static final class Connection {
+
+        final RoutePool pool;
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        final boolean absoluteForm;
+        final long createdNanos = System.nanoTime();
+        final AtomicBoolean leased = new AtomicBoolean(true);
+        volatile long lastUsedNanos = createdNanos;
+        boolean reused;
+        boolean responded;
+
+        Connection(RoutePool pool, Socket socket, boolean absoluteForm) throws IOException {
+            this.pool = pool;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+            this.absoluteForm = absoluteForm;
+        }
+    }
+
+    private static final class NoResponseException extends EOFException {
+
+        NoResponseException(String message) {
+            super(message);
+        }
+    }
+
+    private Connection lease(RoutePool pool, Request.Options options, boolean fresh) throws IOException {
+        acquirePermits(pool);
+        try {
+            if (!fresh) {
+                Connection connection;
+                while ((connection = pool.idle.pollFirst()) != null) {
+                    if (isReusable(connection)) {
+                        connection.leased.set(true);
+                        connection.reused = true;
+                        connection.responded = false;
+                        reused.increment();
+                        return connection;
+                    }
+                    closeConnection(connection);
+                }
+            }
+            var connection = connect(pool, options);
+            created.increment();
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            pool.leases.release();
+            totalLeases.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermits(RoutePool pool) throws IOException {
+        long start = System.nanoTime();
+        long timeout = leaseTimeout.toNanos();
+        pending.incrementAndGet();
+        pool.pending.incrementAndGet();
+        try {
+            if (pool.leases.tryAcquire(timeout, TimeUnit.NANOSECONDS)) {
+                if (totalLeases.tryAcquire(timeout - (System.nanoTime() - start), TimeUnit.NANOSECONDS)) {
+                    acquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                pool.leases.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + pool.route);
+        } finally {
+            pending.decrementAndGet();
+            pool.pending.decrementAndGet();
+        }
+        timedOut.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        throw new InterruptedIOException("Timeout waiting for a connection to " + pool.route + " after " + leaseTimeout);
+    }
+
+    private boolean isExpired(Connection connection, long now) {
+        return now - connection.createdNanos > timeToLiveNanos || now - connection.lastUsedNanos > idleTimeoutNanos;
+    }
+
+    private boolean isReusable(Connection connection) {
+        long now = System.nanoTime();
+        if (isExpired(connection, now)) {
+            expired.increment();
+            return false;
+        }
+        if (now - connection.lastUsedNanos > validateAfterInactivityNanos && isStale(connection)) {
+            stale.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // A server closing an idle connection leaves an EOF (or a 408) to read: a short read tells it apart from silence
+    private static boolean isStale(Connection connection) {
+        if (connection.socket.isClosed()) {
+            return true;
+        }
+        try {
+            if (connection.in.available() > 0) {
+                return true;
+            }
+            connection.socket.setSoTimeout(1);
+            connection.in.read();
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void release(Connection connection) {
+        if (!connection.leased.compareAndSet(true, false)) {
+            return;
+        }
+        var pool = connection.pool;
+        connection.lastUsedNanos = System.nanoTime();
+        if (closed || pool.open.get() > maxPerRoute || isExpired(connection, connection.lastUsedNanos)) {
+            closeConnection(connection);
+        } else {
+            pool.idle.offerFirst(connection);
+        }
+        pool.leases.release();
+        totalLeases.release();
+    }
+
+    private void discard(Connection connection) {
+        if (!connection.leased.compareAndSet(true, false)) {
+            return;
+        }
+        discarded.increment();
+        closeConnection(connection);
+        connection.pool.leases.release();
+        totalLeases.release();
+    }
+
+    private static void closeConnection(Connection connection) {
+        connection.pool.open.decrementAndGet();
+        try {
+            connection.socket.close();
+        } catch (IOException ignored) {
+            // Nothing left to do with it
+        }
+    }
+
+    void evictIdle() {
+        long now = System.nanoTime();
+        for (var pool : pools.values()) {
+            for (var connection : pool.idle) {
+                if (isExpired(connection, now) && pool.idle.removeFirstOccurrence(connection)) {
+                    expired.increment();
+                    closeConnection(connection);
+                }
+            }
+        }
+    }
+
+    public InstrumentedHttpClientConnectionManager.PoolSnapshot snapshot() {
+        var routes = new TreeMap<String, InstrumentedHttpClientConnectionManager.PoolSnapshot>();
+        int available = 0;
+        for (var pool : pools.values()) {
+            var route = pool.snapshot();
+            routes.put(pool.route.toString(), route);
+            available += route.available();
+        }
+        return new InstrumentedHttpClientConnectionManager.PoolSnapshot(maxTotal - totalLeases.availablePermits(),
+                available, pending.get(), maxTotal, routes);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (var pool : pools.values()) {
+            Connection connection;
+            while ((connection = pool.idle.pollFirst()) != null) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    // ---- Connecting
+
+    private Connection connect(RoutePool pool, Request.Options options) throws IOException {
+        var route = pool.route;
+        boolean httpProxy = proxy.type() == Proxy.Type.HTTP;
+        var socket = httpProxy ? new Socket() : new Socket(proxy);
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(options.readTimeoutMillis());
+            InetSocketAddress address;
+            if (httpProxy) {
+                address = (InetSocketAddress) proxy.address();
+            } else if (proxy.type() == Proxy.Type.SOCKS) {
+                address = InetSocketAddress.createUnresolved(route.host(), route.port());
+            } else {
+                address = new InetSocketAddress(route.host(), route.port());
+            }
+            socket.connect(address, options.connectTimeoutMillis());
+            if (route.secure()) {
+                if (httpProxy) {
+                    tunnel(socket, route);
+                }
+                socket = handshake(socket, route);
+            }
+            var connection = new Connection(pool, socket, httpProxy && !route.secure());
+            pool.open.incrementAndGet();
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // Unbuffered: nothing past the proxy's response may be consumed, the TLS handshake starts right after it
+    private static void tunnel(Socket socket, Route route) throws IOException {
+        var out = socket.getOutputStream();
+        out.write(("CONNECT " + route.authority() + " HTTP/1.1\r\nHost: " + route.authority() + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        var in = socket.getInputStream();
+        var statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new EOFException("Proxy closed the connection while tunnelling to " + route);
+        }
+        readHeaders(in);
+        if (statusCode(statusLine) != 200) {
+            throw new IOException("Unable to tunnel through proxy. Proxy returns \"" + statusLine + "\"");
+        }
+    }
+
+    private Socket handshake(Socket socket, Route route) throws IOException {
+        var sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, route.host(), route.port(), true);
+        if (hostnameVerifier == null) {
+            var parameters = sslSocket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslSocket.setSSLParameters(parameters);
+        }
+        sslSocket.startHandshake();
+        if (hostnameVerifier != null && !hostnameVerifier.verify(route.host(), sslSocket.getSession())) {
+            throw new SSLPeerUnverifiedException("Hostname " + route.host() + " not verified");
+        }
+        return sslSocket;
+    }
+
+    // ---- Request
+
+    private static byte[] requestBody(Request request) throws IOException {
+        var body = request.body();
+        if (body == null) {
+            return null;
+        }
+        var encoding = header(request.headers(), "Content-Encoding");
+        if (encoding == null || !(encoding.contains("gzip") || encoding.contains("deflate"))) {
+            return body;
+        }
+        var compressed = new ByteArrayOutputStream();
+        try (var out = encoding.contains("gzip") ? new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void write(Connection connection, String method, URI uri, Map<String, Collection<String>> headers,
+                              byte[] body) throws IOException {
+        var target = new StringBuilder();
+        if (connection.absoluteForm) {
+            target.append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+        }
+        target.append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+        if (uri.getRawQuery() != null) {
+            target.append('?').append(uri.getRawQuery());
+        }
+
+        var head = new StringBuilder(256).append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+        if (header(headers, "Host") == null) {
+            head.append("Host: ").append(uri.getRawAuthority()).append("\r\n");
+        }
+        if (header(headers, "Accept") == null) {
+            head.append("Accept: */*\r\n");
+        }
+        for (var entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase("Content-Length")) {
+                continue;
+            }
+            for (var value : entry.getValue()) {
+                head.append(entry.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (body != null) {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        } else if ("POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method)) {
+            head.append("Content-Length: 0\r\n");
+        }
+        head.append("\r\n");
+
+        connection.out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (body != null) {
+            connection.out.write(body);
+        }
+        connection.out.flush();
+    }
+
+    // ---- Response
+
+    private Response read(Connection connection, Request request, String method, Request.Options options)
+            throws IOException {
+        connection.socket.setSoTimeout(options.readTimeoutMillis());
+        String statusLine;
+        int status;
+        Map<String, Collection<String>> headers;
+        do {
+            statusLine = readLine(connection.in);
+            if (statusLine == null) {
+                throw new NoResponseException("Connection to " + connection.pool.route + " closed before a response");
+            }
+            connection.responded = true;
+            status = statusCode(statusLine);
+            headers = readHeaders(connection.in);
+        } while (status >= 100 && status < 200 && status != 101);
+
+        boolean keepAlive = isKeepAlive(statusLine, headers, request.headers());
+        InputStream framed;
+        Integer length = null;
+        var contentLength = header(headers, "Content-Length");
+        var transferEncoding = header(headers, "Transfer-Encoding");
+        if ("HEAD".equals(method) || status == 204 || status == 304) {
+            framed = null;
+        } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            framed = new ChunkedInputStream(connection.in);
+        } else if (contentLength != null) {
+            long declared = contentLength(contentLength);
+            framed = declared == 0 ? null : new FixedLengthInputStream(connection.in, declared);
+            length = declared <= Integer.MAX_VALUE ? (int) declared : null;
+        } else {
+            // Delimited by the end of the connection
+            framed = connection.in;
+            keepAlive = false;
+        }
+
+        InputStream body = null;
+        if (framed == null) {
+            if (keepAlive) {
+                release(connection);
+            } else {
+                discard(connection);
+            }
+        } else {
+            body = new ResponseBody(connection, framed, keepAlive);
+            var encoding = header(headers, "Content-Encoding");
+            if (encoding != null && encoding.contains("gzip")) {
+                body = new GZIPInputStream(body);
+                length = null;
+            } else if (encoding != null && encoding.contains("deflate")) {
+                body = new InflaterInputStream(body);
+                length = null;
+            }
+        }
+
+        var reason = statusLine.length() > 13 ? statusLine.substring(13) : null;
+        return Response.builder()
+                .status(status)
+                .reason(reason)
+                .headers(headers)
+                .request(request)
+                .body(body, length)
+                .build();
+    }
+
+    /**
+     * @param value the {@code Content-Length} values, comma-joined: repeated values must agree
+     */
+    private static long contentLength(String value) throws IOException {
+        long length = -1;
+        for (var part : value.split(",")) {
+            long parsed;
+            try {
+                parsed = Long.parseLong(part.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + value);
+            }
+            if (parsed < 0 || length != -1 && parsed != length) {
+                throw new IOException("Invalid Content-Length: " + value);
+            }
+            length = parsed;
+        }
+        return length;
+    }
+
+    private static boolean isKeepAlive(String statusLine, Map<String, Collection<String>> headers,
+                                       Map<String, Collection<String>> requestHeaders) {
+        var connection = header(headers, "Connection");
+        var requestConnection = header(requestHeaders, "Connection");
+        if (requestConnection != null && requestConnection.equalsIgnoreCase("close")) {
+            return false;
+        }
+        if (statusLine.startsWith("HTTP/1.0")) {
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        }
+        return connection == null || !connection.toLowerCase().contains("close");
+    }
+
+    private static int statusCode(String statusLine) throws IOException {
+        if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private static Map<String, Collection<String>> readHeaders(InputStream in) throws IOException {
+        var headers = new TreeMap<String, Collection<String>>(String.CASE_INSENSITIVE_ORDER);
+        for (int lines = 0; ; lines++) {
+            var line = readLine(in);
+            if (line == null) {
+                throw new EOFException("Connection closed in the response headers");
+            }
+            if (line.isEmpty()) {
+                return headers;
+            }
+            if (lines == MAX_HEADER_LINES) {
+                throw new IOException("More than " + MAX_HEADER_LINES + " response headers");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.computeIfAbsent(line.substring(0, colon).trim(), _ -> new ArrayList<>())
+                        .add(line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private static String header(Map<String, Collection<String>> headers, String name) {
+        for (var entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                return String.join(",", entry.getValue());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the line without its CRLF, or null at the end of the stream
+     */
+    private static String readLine(InputStream in) throws IOException {
+        var line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Connection closed mid-line");
+            }
+            if (line.size() == MAX_LINE_LENGTH) {
+                throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            line.write(b);
+        }
+        var bytes = line.toByteArray();
+        int end = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, end, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gives the connection back to the pool once the body is read to the end, and closes it if the body fails or
+     * is closed with more than {@code DRAIN_ON_CLOSE_BYTES} left.
+     */
+    private final class ResponseBody extends InputStream {
+
+        private final Connection connection;
+        private final InputStream in;
+        private final boolean keepAlive;
+        private boolean done;
+
+        ResponseBody(Connection connection, InputStream in, boolean keepAlive) {
+            this.connection = connection;
+            this.in = in;
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            try {
+                int n = in.read(b, off, len);
+                if (n == -1) {
+                    finish(true);
+                }
+                return n;
+            } catch (IOException e) {
+                finish(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return done ? 0 : in.available();
+        }
+
+        @Override
+        public void close() {
+            if (done) {
+                return;
+            }
+            try {
+                var skip = new byte[1024];
+                for (int skipped = 0; skipped <= DRAIN_ON_CLOSE_BYTES; ) {
+                    int n = in.read(skip);
+                    if (n == -1) {
+                        finish(true);
+                        return;
+                    }
+                    skipped += n;
+                }
+            } catch (IOException ignored) {
+                // Not worth reusing
+            }
+            finish(false);
+        }
+
+        private void finish(boolean complete) {
+            done = true;
+            if (complete && keepAlive) {
+                release(connection);
+            } else {
+                discard(connection);
+            }
+        }
+    }
+
+    private static final class FixedLengthInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("Connection closed with " + remaining + " bytes of the body missing");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+        private boolean started;
+        private boolean eof;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (remaining == 0) {
+                nextChunk();
+                if (eof) {
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new EOFException("Connection closed in a chunk");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        private void nextChunk() throws IOException {
+            if (started && !"".equals(readLine(in))) {
+                throw new IOException("Missing CRLF after a chunk");
+            }
+            started = true;
+            var line = readLine(in);
+            if (line == null) {
+                throw new EOFException("Connection closed before the last chunk");
+            }
+            int extension = line.indexOf(';');
+            try {
+                remaining = Long.parseLong((extension == -1 ? line : line.substring(0, extension)).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + line);
+            }
+            if (remaining == 0) {
+                readHeaders(in);
+                eof = true;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return eof ? 0 : (int) Math.min(in.available(), remaining);
+        }
+    }
+}
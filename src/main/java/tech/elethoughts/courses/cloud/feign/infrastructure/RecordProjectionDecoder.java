@@ -0,0 +1,235 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import feign.Response;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes records with a {@link Projection} compiled once per record class: a map from JSON property name to
+ * component, a reader per component and a {@link MethodHandle} on the canonical constructor.
+ * <p>
+ * A call walks the tokens of the document once: mapped properties are read straight into the constructor
+ * arguments, every other subtree is skipped with {@link JsonParser#skipChildren()} (no tree, no token buffer,
+ * no reflection). Components that are records themselves are projected the same way; other component types
+ * ({@code List}, maps, enums...) are bound by a precomputed Jackson {@link ObjectReader}. A component is named
+ * after the accessor's {@link JsonProperty} if present. Missing and null properties leave the component's default
+ * value; a value of the wrong type is a {@link DecodeException} naming the component, as with Jackson.
+ * <p>
+ * Targets that are not record classes (including parameterized records), non-JSON responses, 204 and 404
+ * go to the {@code fallback} decoder.
+ */
+public class RecordProjectionDecoder implements Decoder {
+
+    private final ObjectMapper mapper;
+    private final Decoder fallback;
+    private final Map<Class<?>, Projection> projections = new ConcurrentHashMap<>();
+
+    public RecordProjectionDecoder(Decoder fallback) {
+        this(StreamingJacksonDecoder.DEFAULT_MAPPER, fallback);
+    }
+
+    public RecordProjectionDecoder(ObjectMapper mapper, Decoder fallback) {
+        this.mapper = mapper;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (!(type instanceof Class<?> recordClass) || !recordClass.isRecord()
+                || response.status() == 204 || response.status() == 404
+                || response.body() == null || !StreamingJacksonDecoder.isJson(response)) {
+            return fallback.decode(response, type);
+        }
+        try (var in = response.body().asInputStream();
+             var parser = mapper.getFactory().createParser(in)) {
+            parser.nextToken();
+            return projection(recordClass).read(parser);
+        } catch (JsonProcessingException e) {
+            throw new DecodeException(response.status(), e.getMessage(), response.request(), e);
+        }
+    }
+
+    // Not computeIfAbsent: building a projection may look up others (nested records)
+    Projection projection(Class<?> recordClass) {
+        var projection = projections.get(recordClass);
+        if (projection == null) {
+            projection = new Projection(recordClass);
+            var existing = projections.putIfAbsent(recordClass, projection);
+            if (existing != null) {
+                projection = existing;
+            }
+        }
+        return projection;
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        Object read(JsonParser parser) throws IOException;
+    }
+
+    private record Component(int index, ValueReader reader) {
+    }
+
+    final class Projection {
+
+        private final Class<?> recordClass;
+        private final Map<String, Component> components = new HashMap<>();
+        private final Object[] defaults;
+        private final MethodHandle constructor;
+
+        Projection(Class<?> recordClass) {
+            this.recordClass = recordClass;
+            var recordComponents = recordClass.getRecordComponents();
+            var types = new Class<?>[recordComponents.length];
+            this.defaults = new Object[recordComponents.length];
+            for (int i = 0; i < recordComponents.length; i++) {
+                var component = recordComponents[i];
+                types[i] = component.getType();
+                defaults[i] = defaultValue(types[i]);
+                components.put(propertyName(component), new Component(i, reader(component)));
+            }
+            try {
+                var canonical = recordClass.getDeclaredConstructor(types);
+                canonical.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, types.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new IllegalStateException("Cannot project record: " + recordClass.getName(), e);
+            }
+        }
+
+        Object read(JsonParser parser) throws IOException {
+            var token = parser.currentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw MismatchedInputException.from(parser, recordClass,
+                        "Expected an object for " + recordClass.getSimpleName() + ", got " + token);
+            }
+            var args = defaults.clone();
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                var component = components.get(name);
+                if (component == null) {
+                    parser.skipChildren();
+                } else {
+                    try {
+                        args[component.index()] = component.reader().read(parser);
+                    } catch (JsonMappingException e) {
+                        throw JsonMappingException.wrapWithPath(e, recordClass, name);
+                    }
+                }
+            }
+            try {
+                return constructor.invokeExact(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create " + recordClass.getName(), e);
+            }
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        }
+
+        private static String propertyName(RecordComponent component) {
+            var property = component.getAccessor().getAnnotation(JsonProperty.class);
+            return property != null && !property.value().isEmpty() ? property.value() : component.getName();
+        }
+
+        private ValueReader reader(RecordComponent component) {
+            var type = component.getType();
+            if (type == int.class || type == Integer.class) {
+                return scalar(type, parser -> switch (parser.currentToken()) {
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getIntValue();
+                    case VALUE_STRING -> Integer.valueOf(parser.getText().trim());
+                    default -> throw mismatch(parser, type);
+                });
+            }
+            if (type == long.class || type == Long.class) {
+                return scalar(type, parser -> switch (parser.currentToken()) {
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getLongValue();
+                    case VALUE_STRING -> Long.valueOf(parser.getText().trim());
+                    default -> throw mismatch(parser, type);
+                });
+            }
+            if (type == double.class || type == Double.class) {
+                return scalar(type, parser -> switch (parser.currentToken()) {
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+                    case VALUE_STRING -> Double.valueOf(parser.getText().trim());
+                    default -> throw mismatch(parser, type);
+                });
+            }
+            if (type == boolean.class || type == Boolean.class) {
+                return scalar(type, parser -> switch (parser.currentToken()) {
+                    case VALUE_TRUE -> true;
+                    case VALUE_FALSE -> false;
+                    case VALUE_STRING -> switch (parser.getText().trim()) {
+                        case "true" -> true;
+                        case "false" -> false;
+                        default -> throw mismatch(parser, type);
+                    };
+                    default -> throw mismatch(parser, type);
+                });
+            }
+            if (type == String.class) {
+                return scalar(type, parser -> switch (parser.currentToken()) {
+                    case START_OBJECT, START_ARRAY -> throw mismatch(parser, type);
+                    default -> parser.getValueAsString();
+                });
+            }
+            if (type.isRecord() && component.getGenericType() == type) {
+                return parser -> projection(type).read(parser);
+            }
+            ObjectReader reader = mapper.readerFor(mapper.constructType(component.getGenericType()));
+            var empty = defaultValue(type);
+            return parser -> parser.currentToken() == JsonToken.VALUE_NULL ? empty : reader.readValue(parser);
+        }
+
+        // Like Jackson's defaults: null keeps the default value, numbers and booleans may be quoted, anything else
+        // is a mismatch rather than a silent 0 or false
+        private ValueReader scalar(Class<?> type, ValueReader read) {
+            var empty = defaultValue(type);
+            return parser -> {
+                if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                    return empty;
+                }
+                try {
+                    return read.read(parser);
+                } catch (NumberFormatException e) {
+                    throw mismatch(parser, type);
+                }
+            };
+        }
+
+        private MismatchedInputException mismatch(JsonParser parser, Class<?> type) throws IOException {
+            var token = parser.currentToken();
+            var value = token != null && token.isScalarValue() ? " " + parser.getText() : "";
+            return MismatchedInputException.from(parser, type,
+                    "Expected a " + type.getSimpleName() + " in " + recordClass.getSimpleName() + ", got " + token + value);
+        }
+    }
+}
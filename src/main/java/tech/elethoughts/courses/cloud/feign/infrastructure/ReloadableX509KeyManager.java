@@ -0,0 +1,116 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Key manager whose key store can be swapped while handshakes are running.
+ * <p>
+ * A handshake chooses an alias, then asks for its chain and its private key in separate calls. Aliases are
+ * prefixed with the generation of the delegate that chose them and resolved against that same delegate, so a
+ * swap between the calls cannot pair the old chain with the new key. The previous generation stays available
+ * for the handshakes in flight when it is replaced.
+ */
+public class ReloadableX509KeyManager extends X509ExtendedKeyManager {
+
+    private record Generation(int id, X509ExtendedKeyManager delegate) {
+    }
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    public ReloadableX509KeyManager(X509ExtendedKeyManager delegate) {
+        this.current = new Generation(0, delegate);
+    }
+
+    public synchronized void setDelegate(X509ExtendedKeyManager delegate) {
+        var replaced = current;
+        previous = replaced;
+        current = new Generation(replaced.id() + 1, delegate);
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        var generation = current;
+        return tag(generation, generation.delegate().getClientAliases(keyType, issuers));
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+        var generation = current;
+        return tag(generation, generation.delegate().chooseClientAlias(keyType, issuers, socket));
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+        var generation = current;
+        return tag(generation, generation.delegate().chooseEngineClientAlias(keyType, issuers, engine));
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        var generation = current;
+        return tag(generation, generation.delegate().getServerAliases(keyType, issuers));
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        var generation = current;
+        return tag(generation, generation.delegate().chooseServerAlias(keyType, issuers, socket));
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        var generation = current;
+        return tag(generation, generation.delegate().chooseEngineServerAlias(keyType, issuers, engine));
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        var generation = generation(alias);
+        return generation == null ? null : generation.delegate().getCertificateChain(untag(alias));
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        var generation = generation(alias);
+        return generation == null ? null : generation.delegate().getPrivateKey(untag(alias));
+    }
+
+    private static String tag(Generation generation, String alias) {
+        return alias == null ? null : generation.id() + ":" + alias;
+    }
+
+    private static String[] tag(Generation generation, String[] aliases) {
+        return aliases == null ? null : Arrays.stream(aliases).map(alias -> tag(generation, alias)).toArray(String[]::new);
+    }
+
+    private static String untag(String alias) {
+        return alias.substring(alias.indexOf(':') + 1);
+    }
+
+    // Current first: setDelegate writes previous before current
+    private Generation generation(String alias) {
+        int separator = alias == null ? -1 : alias.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(alias.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        var latest = current;
+        if (latest.id() == id) {
+            return latest;
+        }
+        var replaced = previous;
+        return replaced != null && replaced.id() == id ? replaced : null;
+    }
+}
@@ -0,0 +1,45 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket capping retries at a share of the traffic, shared by all calls of a client.
+ * <p>
+ * Every call deposits {@code ratio} tokens and every retry withdraws one, so in a brownout where all calls
+ * fail, retries settle at {@code ratio} of the calls instead of multiplying the load by {@code maxAttempts}.
+ * The balance starts full and is capped at {@code maxTokens}, which bounds the retries of a burst.
+ * Tokens are counted in thousandths in a single {@link AtomicLong}: no lock, no allocation.
+ */
+public class RetryBudget {
+
+    private static final long ONE_TOKEN = 1000;
+
+    private final long depositPerCall;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.depositPerCall = Math.round(ratio * ONE_TOKEN);
+        this.maxBalance = maxTokens * ONE_TOKEN;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    public void onCall() {
+        balance.accumulateAndGet(depositPerCall, (current, deposit) -> Math.min(maxBalance, current + deposit));
+    }
+
+    public boolean tryAcquireRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < ONE_TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - ONE_TOKEN));
+        return true;
+    }
+
+    public double tokens() {
+        return (double) balance.get() / ONE_TOKEN;
+    }
+}
@@ -0,0 +1,108 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.http2client.Http2Client;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Spreads requests over several {@link HttpClient}s, each with its own HTTP/2 connection per origin.
+ * <p>
+ * One JDK client multiplexes every request to an origin on a single connection: past the server's
+ * {@code SETTINGS_MAX_CONCURRENT_STREAMS} requests fail or wait, and one lost TCP segment stalls all the streams
+ * behind it. With N shards the streams are spread over N connections. {@link Selection#LEAST_IN_FLIGHT} sends each
+ * request to the shard with the fewest requests in flight (ties broken round-robin), so a connection slowed down by
+ * loss gets less traffic; {@link Selection#ROUND_ROBIN} only rotates. A request counts as in flight until its
+ * response headers arrive.
+ */
+public class ShardedHttp2Client implements Client, Closeable {
+
+    public enum Selection {
+        LEAST_IN_FLIGHT, ROUND_ROBIN;
+
+        static Selection of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final List<HttpClient> httpClients;
+    private final List<Client> shards;
+    private final Selection selection;
+    private final AtomicIntegerArray inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ShardedHttp2Client(List<HttpClient> httpClients, Selection selection, String clientName,
+                              MeterRegistry meterRegistry) {
+        this(httpClients, httpClients.stream().<Client>map(Http2Client::new).toList(), selection, clientName,
+                meterRegistry);
+    }
+
+    ShardedHttp2Client(List<HttpClient> httpClients, List<Client> shards, Selection selection, String clientName,
+                       MeterRegistry meterRegistry) {
+        this.httpClients = List.copyOf(httpClients);
+        this.shards = List.copyOf(shards);
+        this.selection = selection;
+        this.inFlight = new AtomicIntegerArray(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            Gauge.builder("feign.client.http2.shard.in-flight", inFlight, counts -> counts.get(shard))
+                    .description("Requests in flight on an HTTP/2 client shard")
+                    .tag("client", clientName)
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        int shard = select();
+        inFlight.incrementAndGet(shard);
+        try {
+            return shards.get(shard).execute(request, options);
+        } finally {
+            inFlight.decrementAndGet(shard);
+        }
+    }
+
+    int select() {
+        int size = shards.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (selection == Selection.ROUND_ROBIN) {
+            return start;
+        }
+        int best = start;
+        int bestCount = inFlight.get(start);
+        for (int i = 1; i < size && bestCount > 0; i++) {
+            int candidate = (start + i) % size;
+            int count = inFlight.get(candidate);
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    int inFlight(int shard) {
+        return inFlight.get(shard);
+    }
+
+    List<HttpClient> httpClients() {
+        return httpClients;
+    }
+
+    @Override
+    public void close() {
+        httpClients.forEach(HttpClient::close);
+    }
+}
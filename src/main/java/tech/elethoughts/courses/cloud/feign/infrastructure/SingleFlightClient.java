@@ -0,0 +1,175 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent identical GET/HEAD requests: the first one (leader) goes upstream, the others
+ * (followers) wait for its response and get a copy of the buffered body.
+ * <p>
+ * Requests are identical when method, URL and the {@code single-flight.key-headers} values match; other
+ * headers (correlation ids...) are ignored. A follower whose leader fails gets the same error; one that
+ * times out waiting, or whose leader's body exceeds {@code single-flight.max-body-bytes}, calls upstream itself.
+ */
+public class SingleFlightClient implements DelegatingClient {
+
+    private static final List<String> DEFAULT_KEY_HEADERS =
+            List.of("Accept", "Accept-Encoding", "Accept-Language", "Authorization", "Cookie");
+
+    private final Client delegate;
+    private final List<String> keyHeaders;
+    private final int maxBodyBytes;
+    private final Map<Key, CompletableFuture<Shared>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlightClient(Client delegate, FeignClientProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        var configured = properties.getString("single-flight.key-headers");
+        this.keyHeaders = configured == null
+                ? DEFAULT_KEY_HEADERS
+                : Arrays.stream(configured.split(",")).map(String::trim).filter(h -> !h.isEmpty()).toList();
+        this.maxBodyBytes = properties.getInt("single-flight.max-body-bytes", 1024 * 1024);
+
+        var client = properties.getClientName();
+        this.leaders = Counter.builder("feign.client.single-flight.calls")
+                .description("Requests that went upstream (leader) or joined an in-flight one (follower)")
+                .tag("client", client).tag("role", "leader")
+                .register(meterRegistry);
+        this.followers = Counter.builder("feign.client.single-flight.calls")
+                .description("Requests that went upstream (leader) or joined an in-flight one (follower)")
+                .tag("client", client).tag("role", "follower")
+                .register(meterRegistry);
+        Gauge.builder("feign.client.single-flight.coalescing.ratio", this, SingleFlightClient::coalescingRatio)
+                .description("Share of requests served by another request's upstream call")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    private record Key(Request.HttpMethod method, String url, List<String> headers) {
+    }
+
+    // Null body: too large to share
+    private record Shared(Response response, byte[] body) {
+    }
+
+    @Override
+    public Client delegate() {
+        return delegate;
+    }
+
+    public double coalescingRatio() {
+        double joined = followers.count();
+        double total = joined + leaders.count();
+        return total == 0 ? 0 : joined / total;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        var method = request.httpMethod();
+        if (method != Request.HttpMethod.GET && method != Request.HttpMethod.HEAD) {
+            return delegate.execute(request, options);
+        }
+
+        var key = key(request);
+        var call = new CompletableFuture<Shared>();
+        var inFlightCall = inFlight.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            var shared = await(inFlightCall, options);
+            if (shared != null && shared.body() != null) {
+                followers.increment();
+                return copy(shared, request);
+            }
+            return delegate.execute(request, options);
+        }
+
+        leaders.increment();
+        try {
+            var response = delegate.execute(request, options);
+            var shared = buffer(response);
+            call.complete(shared);
+            return shared.body() == null ? shared.response() : copy(shared, request);
+        } catch (Throwable e) {
+            // Errors too: followers would otherwise wait out their whole timeout
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private Key key(Request request) {
+        var values = new ArrayList<String>(keyHeaders.size());
+        for (var name : keyHeaders) {
+            values.add(CachingClient.header(request.headers(), name));
+        }
+        return new Key(request.httpMethod(), request.url(), values);
+    }
+
+    private Shared await(CompletableFuture<Shared> call, Request.Options options) throws IOException {
+        long timeoutMillis = options.connectTimeoutMillis() + options.readTimeoutMillis();
+        try {
+            return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for in-flight request");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Shared buffer(Response response) throws IOException {
+        if (response.body() == null) {
+            return new Shared(response, new byte[0]);
+        }
+        var length = response.body().length();
+        if (length != null && length > maxBodyBytes) {
+            return new Shared(response, null);
+        }
+        var in = response.body().asInputStream();
+        var body = in.readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            return new Shared(response.toBuilder()
+                    .body(new SequenceInputStream(new ByteArrayInputStream(body), in), length)
+                    .build(), null);
+        }
+        response.close();
+        return new Shared(response, body);
+    }
+
+    private static Response copy(Shared shared, Request request) {
+        return shared.response().toBuilder()
+                .body(shared.body())
+                .request(request)
+                .build();
+    }
+}
@@ -0,0 +1,255 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Process-wide cache of {@link SSLContext}s keyed by the location and SHA-256 of the key and trust stores.
+ * <p>
+ * Clients configured with the same material get the same context, hence the same client session cache,
+ * and can resume each other's TLS sessions. Key and trust managers are shared per store as well.
+ * <p>
+ * With {@code tls.reload.enabled}, managers for {@code file:} stores are swappable: the file is watched and
+ * new handshakes use the rotated material, while established (pooled) connections keep running. A resumed
+ * handshake would skip certificate validation and key selection, so the cached client sessions of every context
+ * using a rotated store are invalidated on reload.
+ */
+public final class SslContextRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SslContextRegistry.class);
+    private static final SslContextRegistry SHARED = new SslContextRegistry();
+
+    private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+    private final ConcurrentMap<StoreKey, KeyManager[]> keyManagers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<StoreKey, TrustManager[]> trustManagers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ContextKey, Entry> contexts = new ConcurrentHashMap<>();
+
+    SslContextRegistry() {
+    }
+
+    public static SslContextRegistry shared() {
+        return SHARED;
+    }
+
+    record StoreKey(String location, String sha256, String passwordSha256, boolean reloadable) {
+    }
+
+    record ContextKey(StoreKey keyStore, StoreKey trustStore) {
+    }
+
+    private record LoadedStore(StoreKey key, KeyStore keyStore, char[] password, Path file) {
+    }
+
+    // Clients sharing a context may ask for different session cache settings: keep the most generous one.
+    private static final class Entry {
+
+        private final SSLContext sslContext;
+        private int sessionCacheSize;
+        private long sessionTimeoutSeconds;
+
+        Entry(SSLContext sslContext) {
+            this.sslContext = sslContext;
+        }
+
+        synchronized void tuneSessionCache(int cacheSize, Duration timeout) {
+            var sessionContext = sslContext.getClientSessionContext();
+            if (cacheSize > 0 && cacheSize > sessionCacheSize) {
+                sessionCacheSize = cacheSize;
+                sessionContext.setSessionCacheSize(cacheSize);
+            }
+            if (timeout != null && timeout.toSeconds() > sessionTimeoutSeconds) {
+                sessionTimeoutSeconds = timeout.toSeconds();
+                sessionContext.setSessionTimeout((int) Math.min(Integer.MAX_VALUE, sessionTimeoutSeconds));
+            }
+        }
+    }
+
+    public SSLContext getOrCreate(FeignClientProperties properties) throws Exception {
+        var reload = properties.getBoolean("tls.reload.enabled", false);
+        var keyStore = load(properties.getKeyStore(), properties.getKeyStorePassword(), reload);
+        var trustStore = load(properties.getTrustStore(), properties.getTrustStorePassword(), reload);
+
+        if (keyStore == null && trustStore == null) {
+            return SSLContext.getDefault();
+        }
+
+        var key = new ContextKey(keyStore == null ? null : keyStore.key(), trustStore == null ? null : trustStore.key());
+        var entry = contexts.get(key);
+        if (entry == null) {
+            var sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagers(keyStore), trustManagers(trustStore), new SecureRandom());
+            var created = new Entry(sslContext);
+            entry = contexts.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+
+        entry.tuneSessionCache(
+                properties.getInt("tls.session-cache-size", 0),
+                properties.getDuration("tls.session-timeout", null));
+        return entry.sslContext;
+    }
+
+    int size() {
+        return contexts.size();
+    }
+
+    private KeyManager[] keyManagers(LoadedStore store) {
+        if (store == null) {
+            return null;
+        }
+        return keyManagers.computeIfAbsent(store.key(), _ -> {
+            var managers = createKeyManagers(store.keyStore(), store.password());
+            if (!store.key().reloadable()) {
+                return managers;
+            }
+            var reloadable = new ReloadableX509KeyManager(first(managers, X509ExtendedKeyManager.class));
+            watch(store, ks -> reloadable.setDelegate(
+                    first(createKeyManagers(ks, store.password()), X509ExtendedKeyManager.class)));
+            return new KeyManager[]{reloadable};
+        });
+    }
+
+    private TrustManager[] trustManagers(LoadedStore store) {
+        if (store == null) {
+            return null;
+        }
+        return trustManagers.computeIfAbsent(store.key(), _ -> {
+            var managers = createTrustManagers(store.keyStore());
+            if (!store.key().reloadable()) {
+                return managers;
+            }
+            var reloadable = new ReloadableX509TrustManager(first(managers, X509ExtendedTrustManager.class));
+            watch(store, ks -> reloadable.setDelegate(
+                    first(createTrustManagers(ks), X509ExtendedTrustManager.class)));
+            return new TrustManager[]{reloadable};
+        });
+    }
+
+    private static KeyManager[] createKeyManagers(KeyStore keyStore, char[] password) {
+        try {
+            var kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, password);
+            return kmf.getKeyManagers();
+        } catch (Exception e) {
+            throw new IllegalStateException("Error loading key material", e);
+        }
+    }
+
+    private static TrustManager[] createTrustManagers(KeyStore keyStore) {
+        try {
+            var tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(keyStore);
+            return tmf.getTrustManagers();
+        } catch (Exception e) {
+            throw new IllegalStateException("Error loading trust material", e);
+        }
+    }
+
+    private static <T> T first(Object[] managers, Class<T> type) {
+        for (var manager : managers) {
+            if (type.isInstance(manager)) {
+                return type.cast(manager);
+            }
+        }
+        throw new IllegalStateException("No " + type.getSimpleName() + " available for reloading");
+    }
+
+    private void watch(LoadedStore store, Consumer<KeyStore> onReload) {
+        var path = store.file();
+        var lastSha256 = new String[]{store.key().sha256()};
+        KeyMaterialWatcher.shared().watch(path, () -> {
+            byte[] content;
+            try {
+                content = Files.readAllBytes(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            var sha256 = sha256(content);
+            if (sha256.equals(lastSha256[0])) {
+                return;
+            }
+            // A half-written file fails to parse here; the next write event retries.
+            onReload.accept(parse(content, store.password()));
+            invalidateSessions(store.key());
+            lastSha256[0] = sha256;
+            log.info("Reloaded TLS material from {}", path);
+        });
+    }
+
+    private void invalidateSessions(StoreKey store) {
+        contexts.forEach((key, entry) -> {
+            if (store.equals(key.keyStore()) || store.equals(key.trustStore())) {
+                var sessionContext = entry.sslContext.getClientSessionContext();
+                for (var ids = sessionContext.getIds(); ids.hasMoreElements(); ) {
+                    var session = sessionContext.getSession(ids.nextElement());
+                    if (session != null) {
+                        session.invalidate();
+                    }
+                }
+            }
+        });
+    }
+
+    private LoadedStore load(String location, char[] password, boolean reload) throws Exception {
+        if (location == null) {
+            return null;
+        }
+        var resource = resourceLoader.getResource(location);
+        byte[] content;
+        try (var is = resource.getInputStream()) {
+            content = is.readAllBytes();
+        }
+        var file = reload && resource.isFile() ? resource.getFile().toPath() : null;
+        if (reload && file == null) {
+            log.warn("tls.reload.enabled ignored for {}: only file resources can be watched", location);
+        }
+        var passwordBytes = new String(password).getBytes(StandardCharsets.UTF_8);
+        var key = new StoreKey(location, sha256(content), sha256(passwordBytes), file != null);
+        return new LoadedStore(key, parse(content, password), password, file);
+    }
+
+    private static KeyStore parse(byte[] content, char[] password) {
+        try {
+            var ks = KeyStore.getInstance("PKCS12");
+            ks.load(new ByteArrayInputStream(content), password);
+            return ks;
+        } catch (Exception e) {
+            throw new IllegalStateException("Error reading PKCS12 store", e);
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
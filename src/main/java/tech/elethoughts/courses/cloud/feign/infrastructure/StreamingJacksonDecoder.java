@@ -0,0 +1,86 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import feign.Response;
+import feign.Util;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes JSON bodies with Jackson straight from {@link Response.Body#asInputStream()}.
+ * <p>
+ * The parser pulls the body through its own recycled 8 KB buffer instead of the body being read into a byte array
+ * first, and unknown properties are skipped token by token without building their values, so decoding a small record
+ * out of a large document allocates little more than the record. Non-JSON responses and {@code String}/{@code byte[]}
+ * targets go to the {@code fallback} decoder.
+ */
+public class StreamingJacksonDecoder implements Decoder {
+
+    static final ObjectMapper DEFAULT_MAPPER = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .annotationIntrospector(new IgnoreUnknownIntrospector())
+            .build();
+
+    private final ObjectMapper mapper;
+    private final Decoder fallback;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public StreamingJacksonDecoder(Decoder fallback) {
+        this(DEFAULT_MAPPER, fallback);
+    }
+
+    public StreamingJacksonDecoder(ObjectMapper mapper, Decoder fallback) {
+        this.mapper = mapper;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.status() == 204 || response.status() == 404) {
+            return Util.emptyValueOf(type);
+        }
+        if (response.body() == null) {
+            return null;
+        }
+        if (type == String.class || type == byte[].class || !isJson(response)) {
+            return fallback.decode(response, type);
+        }
+        try (var in = response.body().asInputStream()) {
+            return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.constructType(t))).readValue(in);
+        } catch (JsonProcessingException e) {
+            throw new DecodeException(response.status(), e.getMessage(), response.request(), e);
+        }
+    }
+
+    /**
+     * Acts as if every type had {@code @JsonIgnoreProperties(ignoreUnknown = true)}. Without it, a type built through
+     * a constructor (records) copies each unknown property into a token buffer in case it is needed later: with
+     * {@code FAIL_ON_UNKNOWN_PROPERTIES} off alone, a large document is still fully materialized.
+     */
+    static final class IgnoreUnknownIntrospector extends JacksonAnnotationIntrospector {
+
+        @Override
+        public JsonIgnoreProperties.Value findPropertyIgnoralByName(MapperConfig<?> config, Annotated annotated) {
+            return super.findPropertyIgnoralByName(config, annotated).withIgnoreUnknown();
+        }
+    }
+
+    // Response headers are case-insensitive. No Content-Type: assume JSON, the API clients only declare JSON endpoints
+    static boolean isJson(Response response) {
+        var contentType = response.headers().get("Content-Type");
+        return contentType == null || contentType.stream().anyMatch(value -> value.toLowerCase().contains("json"));
+    }
+}
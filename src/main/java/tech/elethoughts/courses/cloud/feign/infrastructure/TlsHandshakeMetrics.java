@@ -0,0 +1,58 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import javax.net.ssl.SSLSession;
+import java.util.concurrent.TimeUnit;
+
+public class TlsHandshakeMetrics {
+
+    private final Counter fullHandshakes;
+    private final Counter resumedHandshakes;
+    private final Timer fullHandshakeDuration;
+    private final Timer resumedHandshakeDuration;
+
+    public TlsHandshakeMetrics(MeterRegistry registry, String clientName) {
+        this.fullHandshakes = Counter.builder("feign.client.tls.handshakes")
+                .description("TLS handshakes performed by the client")
+                .tag("client", clientName).tag("type", "full")
+                .register(registry);
+        this.resumedHandshakes = Counter.builder("feign.client.tls.handshakes")
+                .description("TLS handshakes performed by the client")
+                .tag("client", clientName).tag("type", "resumed")
+                .register(registry);
+        this.fullHandshakeDuration = Timer.builder("feign.client.tls.handshake.duration")
+                .tag("client", clientName).tag("type", "full")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.resumedHandshakeDuration = Timer.builder("feign.client.tls.handshake.duration")
+                .tag("client", clientName).tag("type", "resumed")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("feign.client.tls.session.cache.hit.ratio", this, TlsHandshakeMetrics::sessionCacheHitRatio)
+                .description("Share of TLS handshakes that resumed a cached session")
+                .tag("client", clientName)
+                .register(registry);
+    }
+
+    // A resumed session keeps the creation time of the session it was resumed from (TLS 1.2 and 1.3 PSK).
+    public void handshakeCompleted(SSLSession session, long startMillis, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        if (session.getCreationTime() < startMillis) {
+            resumedHandshakes.increment();
+            resumedHandshakeDuration.record(elapsed, TimeUnit.NANOSECONDS);
+        } else {
+            fullHandshakes.increment();
+            fullHandshakeDuration.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public double sessionCacheHitRatio() {
+        double resumed = resumedHandshakes.count();
+        double total = resumed + fullHandshakes.count();
+        return total == 0 ? 0 : resumed / total;
+    }
+}
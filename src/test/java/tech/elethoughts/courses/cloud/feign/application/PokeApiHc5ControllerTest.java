@@ -0,0 +1,67 @@
+package tech.elethoughts.courses.cloud.feign.application;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClientHc5;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class PokeApiHc5ControllerTest {
+
+    final CountDownLatch slowCallReleased = new CountDownLatch(1);
+
+    final PokeApiClientHc5 client = name -> {
+        if (name.equals("snorlax")) {
+            try {
+                slowCallReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new Pokemon(1L, name, 1, 1);
+    };
+
+    final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new PokeApiHc5Controller(client, new PokemonStreamer(4, 50, 10, Duration.ofSeconds(30))))
+            .build();
+
+    @Test
+    void shouldReturnSinglePokemonByName() throws Exception {
+        mockMvc.perform(get("/api/hc5/pokemon/pikachu"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.name").value("pikachu"));
+    }
+
+    @Test
+    void shouldWriteEachPokemonAsSoonAsItsCallCompletes() throws Exception {
+        var result = mockMvc.perform(get("/api/hc5/pokemon")
+                        .param("names", "snorlax", "pikachu")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var response = result.getResponse();
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(response.getContentAsString(StandardCharsets.UTF_8))
+                        .startsWith("{\"name\":\"pikachu\"")
+                        .doesNotContain("snorlax"));
+
+        slowCallReleased.countDown();
+        result.getAsyncResult(5_000);
+        assertThat(response.getContentAsString(StandardCharsets.UTF_8).lines())
+                .hasSize(2)
+                .last().asString().startsWith("{\"name\":\"snorlax\"");
+    }
+}
@@ -0,0 +1,125 @@
+package tech.elethoughts.courses.cloud.feign.application;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+import tech.elethoughts.courses.cloud.feign.infrastructure.PokeApiClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PokemonBatchControllerTest {
+
+    static final Pokemon PIKACHU = new Pokemon(25L, "pikachu", 4, 60);
+
+    MockMvc mockMvc(PokeApiClient client, int maxConcurrency) {
+        var streamer = new PokemonStreamer(maxConcurrency, 50, 10, Duration.ofSeconds(30));
+        return MockMvcBuilders.standaloneSetup(new PokemonBatchController(Map.of("hc5", client), streamer)).build();
+    }
+
+    String batch(MockMvc mockMvc, String names) throws Exception {
+        var result = mockMvc.perform(post("/api/hc5/pokemon:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(names))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10_000);
+        assertThat(result.getResponse().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON_VALUE);
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    static FeignException notFound(String name) {
+        var request = Request.create(Request.HttpMethod.GET, "https://pokeapi.co/api/v2/pokemon/" + name,
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        return FeignException.errorStatus("PokeApiClient#getByName(String)",
+                Response.builder().status(404).reason("Not Found").request(request).headers(Map.of()).build());
+    }
+
+    @Test
+    void shouldStreamOneLinePerDistinctNameWithPerItemErrors() throws Exception {
+        PokeApiClient client = name -> {
+            if (name.equals("missingno")) {
+                throw notFound(name);
+            }
+            return PIKACHU;
+        };
+
+        var lines = batch(mockMvc(client, 4), """
+                ["pikachu", "missingno", "pikachu"]
+                """).lines().toList();
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines).anySatisfy(line -> assertThat(line)
+                .startsWith("{\"name\":\"pikachu\",\"pokemon\":{\"id\":25,")
+                .doesNotContain("error"));
+        assertThat(lines).anySatisfy(line -> assertThat(line)
+                .startsWith("{\"name\":\"missingno\",\"error\":{\"status\":404,")
+                .doesNotContain("pokemon\":"));
+    }
+
+    @Test
+    void shouldNotExceedMaxConcurrency() throws Exception {
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        PokeApiClient client = name -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return PIKACHU;
+        };
+
+        var lines = batch(mockMvc(client, 2), """
+                ["a", "b", "c", "d", "e", "f", "g", "h"]
+                """).lines().toList();
+
+        assertThat(lines).hasSize(8);
+        assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRejectUnknownTransportAndOversizedBatch() throws Exception {
+        var mockMvc = mockMvc(name -> PIKACHU, 2);
+
+        mockMvc.perform(post("/api/ftp/pokemon:batch").contentType(MediaType.APPLICATION_JSON).content("[\"a\"]"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/hc5/pokemon:batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"1\",\"2\",\"3\",\"4\",\"5\",\"6\",\"7\",\"8\",\"9\",\"10\",\"11\"]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamWithItsOwnTimeoutRatherThanTheContainerDefault() {
+        var streamer = new PokemonStreamer(2, 50, 10, Duration.ofMinutes(10));
+
+        var response = streamer.stream(name -> PIKACHU, List.of("pikachu"));
+
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getTimeout()).isEqualTo(Duration.ofMinutes(10).toMillis());
+    }
+
+    @Test
+    void shouldKeepBatchConcurrencyWithinThePerRouteLimit() {
+        assertThat(PokemonStreamer.maxConcurrency(null, 50)).isEqualTo(8);
+        assertThat(PokemonStreamer.maxConcurrency(null, 8)).isEqualTo(2);
+        assertThat(PokemonStreamer.maxConcurrency(null, 2)).isEqualTo(1);
+        assertThat(PokemonStreamer.maxConcurrency(20, 10)).isEqualTo(10);
+        assertThat(PokemonStreamer.maxConcurrency(4, 50)).isEqualTo(4);
+    }
+}
@@ -0,0 +1,117 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimitClientTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.limiter-test.";
+    static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final Request request = Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/pikachu",
+            Map.of(), null, StandardCharsets.UTF_8, null);
+
+    AdaptiveConcurrencyLimitClient limiter(Client delegate, String... properties) {
+        var env = new MockEnvironment();
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        return new AdaptiveConcurrencyLimitClient(delegate, new FeignClientProperties(env, "limiter-test"), meterRegistry);
+    }
+
+    Response ok(Request request) {
+        return Response.builder().status(200).request(request).headers(Map.of()).build();
+    }
+
+    @Test
+    void shouldShedRequestsBeyondTheLimitWithoutCallingUpstream() throws Exception {
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(2);
+        var client = limiter((request, options) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ok(request);
+        }, "limiter.initial-limit", "2", "limiter.min-limit", "1");
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> client.execute(request, new Request.Options()));
+            var second = executor.submit(() -> client.execute(request, new Request.Options()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(meterRegistry.get("feign.client.concurrency.in-flight").gauge().value()).isEqualTo(2);
+
+            assertThatThrownBy(() -> client.execute(request, new Request.Options()))
+                    .isInstanceOf(ConcurrencyLimitExceededException.class)
+                    .hasMessage("Concurrency limit of 2 reached for: limiter-test");
+
+            release.countDown();
+            assertThat(first.get().status()).isEqualTo(200);
+            assertThat(second.get().status()).isEqualTo(200);
+        }
+        assertThat(client.inFlight()).isZero();
+        assertThat(meterRegistry.get("feign.client.concurrency.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldGrowWhileLatencyIsStableAndShrinkWhenItRises() {
+        var client = limiter((request, options) -> ok(request), "limiter.initial-limit", "10", "limiter.max-limit", "40");
+
+        for (int i = 0; i < 100; i++) {
+            client.onSample(10 * MILLIS, client.limit());
+        }
+        assertThat(client.limit()).isEqualTo(40);
+
+        for (int i = 0; i < 20; i++) {
+            client.onSample(100 * MILLIS, client.limit());
+        }
+        assertThat(client.limit()).isLessThan(20);
+
+        for (int i = 0; i < 80; i++) {
+            client.onSample(100 * MILLIS, client.limit());
+        }
+        assertThat(client.limit()).isEqualTo(5);
+        assertThat(meterRegistry.get("feign.client.concurrency.limit").gauge().value()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldNotGrowWhileMostOfTheLimitIsUnused() {
+        var client = limiter((request, options) -> ok(request), "limiter.initial-limit", "10");
+
+        for (int i = 0; i < 100; i++) {
+            client.onSample(10 * MILLIS, 1);
+        }
+
+        assertThat(client.limit()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldCutTheLimitOnIoErrors() {
+        var timeout = new SocketTimeoutException("Read timed out");
+        var client = limiter((request, options) -> {
+            throw timeout;
+        }, "limiter.initial-limit", "20");
+
+        assertThatThrownBy(() -> client.execute(request, new Request.Options())).isSameAs(timeout);
+
+        assertThat(client.limit()).isEqualTo(18);
+        assertThat(client.inFlight()).isZero();
+    }
+}
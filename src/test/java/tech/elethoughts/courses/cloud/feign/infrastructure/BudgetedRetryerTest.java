@@ -0,0 +1,115 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Request;
+import feign.RetryableException;
+import feign.Retryer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BudgetedRetryerTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.retry-test.";
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    BudgetedRetryer retryer(String... properties) {
+        var env = new MockEnvironment()
+                .withProperty(PREFIX + "retry.initial-backoff", "1ms")
+                .withProperty(PREFIX + "retry.max-backoff", "4ms");
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        return new BudgetedRetryer(new FeignClientProperties(env, "retry-test"), meterRegistry);
+    }
+
+    static RetryableException failure(Long retryAfter) {
+        var request = Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/pikachu",
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        return new RetryableException(503, "Service Unavailable", Request.HttpMethod.GET, retryAfter, request);
+    }
+
+    double attempts(String outcome) {
+        return meterRegistry.get("feign.client.retry.attempts").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void shouldRetryUntilMaxAttemptsThenPropagate() {
+        var call = retryer("retry.max-attempts", "3").clone();
+        var failure = failure(null);
+
+        call.continueOrPropagate(failure);
+        call.continueOrPropagate(failure);
+
+        assertThatThrownBy(() -> call.continueOrPropagate(failure)).isSameAs(failure);
+        assertThat(attempts("retried")).isEqualTo(2);
+        assertThat(attempts("attempts_exhausted")).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.retry.backoff").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldStopRetryingOnceTheBudgetIsSpentAndRefillWithTraffic() {
+        var prototype = retryer("retry.budget.max-tokens", "2", "retry.budget.ratio", "0.25");
+        var failure = failure(null);
+
+        prototype.clone().continueOrPropagate(failure);
+        prototype.clone().continueOrPropagate(failure);
+        assertThatThrownBy(() -> prototype.clone().continueOrPropagate(failure)).isSameAs(failure);
+        assertThat(attempts("budget_exhausted")).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.retry.budget.tokens").gauge().value()).isEqualTo(0.5);
+
+        prototype.clone();
+        prototype.clone().continueOrPropagate(failure);
+
+        assertThat(attempts("retried")).isEqualTo(3);
+    }
+
+    @Test
+    void shouldWaitForRetryAfterAndGiveUpWhenItIsTooFar() {
+        var prototype = retryer("retry.max-retry-after", "1s");
+
+        long start = System.nanoTime();
+        prototype.clone().continueOrPropagate(failure(System.currentTimeMillis() + 200));
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+
+        var tooFar = failure(System.currentTimeMillis() + 60_000);
+        assertThatThrownBy(() -> prototype.clone().continueOrPropagate(tooFar)).isSameAs(tooFar);
+        assertThat(attempts("retry_after_too_long")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepJitteredBackoffWithinBounds() {
+        for (var jitter : new String[]{"full", "decorrelated"}) {
+            var call = retryer("retry.jitter", jitter, "retry.max-attempts", "5", "retry.budget.max-tokens", "100").clone();
+            var failure = failure(null);
+            for (int i = 0; i < 4; i++) {
+                call.continueOrPropagate(failure);
+            }
+        }
+
+        var backoff = meterRegistry.get("feign.client.retry.backoff").timer();
+        assertThat(backoff.count()).isEqualTo(8);
+        assertThat(backoff.max(TimeUnit.MILLISECONDS)).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void shouldPropagateWhenInterrupted() {
+        Retryer call = retryer("retry.initial-backoff", "10s", "retry.max-backoff", "10s", "retry.jitter", "decorrelated").clone();
+        var failure = failure(null);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> call.continueOrPropagate(failure)).isSameAs(failure);
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
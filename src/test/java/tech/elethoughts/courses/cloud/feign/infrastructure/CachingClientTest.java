@@ -0,0 +1,211 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringJUnitConfig(classes = CachingClientTest.TestConfig.class)
+class CachingClientTest {
+
+    static final String POKEMON_JSON = """
+            {"id": 133, "name": "eevee", "height": 3, "weight": 65}
+            """;
+
+    @Configuration
+    @EnableFeignClients(defaultConfiguration = FeignClientDefaultsConfig.class,
+            clients = {PokeApiClientDefault.class, PokeApiClientHc5.class, PokeApiClientHttp2.class})
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class TestConfig {
+    }
+
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        for (var client : List.of("pokemon-default", "pokemon-hc5", "pokemon-http2")) {
+            registry.add("spring.cloud.openfeign.client.config." + client + ".url", wireMock::baseUrl);
+            registry.add("spring.cloud.openfeign.client.config." + client + ".cache.enabled", () -> "true");
+        }
+    }
+
+    @Autowired
+    ApplicationContext context;
+
+    PokeApiClient client(String transport) {
+        return switch (transport) {
+            case "default" -> context.getBean(PokeApiClientDefault.class);
+            case "hc5" -> context.getBean(PokeApiClientHc5.class);
+            default -> context.getBean(PokeApiClientHttp2.class);
+        };
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldServeFreshResponseFromCache(String transport) {
+        var path = "/api/v2/pokemon/fresh-" + transport;
+        wireMock.stubFor(get(path).willReturn(okJson(POKEMON_JSON).withHeader("Cache-Control", "max-age=60")));
+
+        client(transport).getByName("fresh-" + transport);
+        var pokemon = client(transport).getByName("fresh-" + transport);
+
+        assertThat(pokemon.name()).isEqualTo("eevee");
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldRevalidateStaleResponseWithEtag(String transport) {
+        var path = "/api/v2/pokemon/etag-" + transport;
+        wireMock.stubFor(get(path).willReturn(okJson(POKEMON_JSON)
+                .withHeader("Cache-Control", "no-cache")
+                .withHeader("ETag", "\"v1\"")));
+        wireMock.stubFor(get(path).withHeader("If-None-Match", equalTo("\"v1\""))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(304).withHeader("ETag", "\"v1\"")));
+
+        client(transport).getByName("etag-" + transport);
+        var pokemon = client(transport).getByName("etag-" + transport);
+
+        assertThat(pokemon.weight()).isEqualTo(65);
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)).withoutHeader("If-None-Match"));
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)).withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldNotStoreNoStoreResponses(String transport) {
+        var path = "/api/v2/pokemon/no-store-" + transport;
+        wireMock.stubFor(get(path).willReturn(okJson(POKEMON_JSON)
+                .withHeader("Cache-Control", "no-store")
+                .withHeader("ETag", "\"v1\"")));
+
+        client(transport).getByName("no-store-" + transport);
+        client(transport).getByName("no-store-" + transport);
+
+        wireMock.verify(2, getRequestedFor(urlEqualTo(path)).withoutHeader("If-None-Match"));
+    }
+
+    static CachingClient cachingClient(AtomicInteger calls, Map<String, Collection<String>> responseHeaders) {
+        return cachingClient(calls, responseHeaders, new MockEnvironment(), new SimpleMeterRegistry());
+    }
+
+    static CachingClient cachingClient(AtomicInteger calls, Map<String, Collection<String>> responseHeaders,
+                                       MockEnvironment env, MeterRegistry meterRegistry) {
+        Client upstream = (request, options) -> {
+            calls.incrementAndGet();
+            return Response.builder().status(200).request(request).headers(responseHeaders)
+                    .body(header(request, "Authorization"), StandardCharsets.UTF_8).build();
+        };
+        return new CachingClient(upstream, new FeignClientProperties(env, "cache-test"), meterRegistry);
+    }
+
+    static String header(Request request, String name) {
+        return String.valueOf(CachingClient.header(request.headers(), name));
+    }
+
+    static String fetch(CachingClient client, String token) throws IOException {
+        var request = Request.create(Request.HttpMethod.GET, "https://pokeapi.co/api/v2/pokemon/eevee",
+                Map.of("Authorization", List.of(token)), null, StandardCharsets.UTF_8, null);
+        try (var response = client.execute(request, new Request.Options())) {
+            return new String(response.body().asInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void shouldNotShareAnAuthorizedResponseBetweenTokens() throws Exception {
+        var calls = new AtomicInteger();
+        var client = cachingClient(calls, Map.of("Cache-Control", List.of("max-age=60")));
+
+        assertThat(fetch(client, "Bearer ash")).isEqualTo("Bearer ash");
+        assertThat(fetch(client, "Bearer gary")).isEqualTo("Bearer gary");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldKeyPublicResponsesByTheirVaryHeaders() throws Exception {
+        var calls = new AtomicInteger();
+        var client = cachingClient(calls, Map.of("Cache-Control", List.of("public, max-age=60"),
+                "Vary", List.of("Authorization")));
+
+        assertThat(fetch(client, "Bearer ash")).isEqualTo("Bearer ash");
+        assertThat(fetch(client, "Bearer gary")).isEqualTo("Bearer gary");
+        assertThat(fetch(client, "Bearer ash")).isEqualTo("Bearer ash");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldNotStoreVaryStar() throws Exception {
+        var calls = new AtomicInteger();
+        var client = cachingClient(calls, Map.of("Cache-Control", List.of("public, max-age=60"), "Vary", List.of("*")));
+
+        fetch(client, "Bearer ash");
+        fetch(client, "Bearer ash");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldBoundTheCacheByTheBytesItHolds() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        var client = cachingClient(new AtomicInteger(), Map.of("Cache-Control", List.of("public, max-age=60"),
+                "Vary", List.of("Authorization")), new MockEnvironment()
+                .withProperty("spring.cloud.openfeign.client.config.cache-test.cache.max-bytes", "2KB"), meterRegistry);
+
+        for (var trainer : List.of("ash", "gary", "misty", "brock")) {
+            fetch(client, "Bearer " + trainer + "-".repeat(600));
+        }
+
+        var size = meterRegistry.get("cache.size").tag("cache", "feign.cache-test").gauge();
+        for (int i = 0; i < 500 && size.value() > 2; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(size.value()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldNotStorePrivateResponsesWhateverTheDefaultLocale() throws Exception {
+        var defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            var calls = new AtomicInteger();
+            var client = cachingClient(calls, Map.of("Cache-Control", List.of("PRIVATE, MAX-AGE=60, S-MAXAGE=60")));
+
+            fetch(client, "Bearer ash");
+            fetch(client, "Bearer ash");
+            assertThat(calls).hasValue(2);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import tech.elethoughts.courses.cloud.feign.infrastructure.CircuitBreakerClient.State;
+import tech.elethoughts.courses.cloud.feign.infrastructure.CircuitBreakerClient.Transition;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerClientTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.breaker-test.";
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final List<Transition> transitions = new CopyOnWriteArrayList<>();
+    final AtomicInteger upstreamCalls = new AtomicInteger();
+    final Request request = Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/pikachu",
+            Map.of(), null, StandardCharsets.UTF_8, null);
+
+    CircuitBreakerClient breaker(Client delegate, String... properties) {
+        var env = new MockEnvironment()
+                .withProperty(PREFIX + "circuit-breaker.sliding-window-size", "10")
+                .withProperty(PREFIX + "circuit-breaker.minimum-number-of-calls", "4")
+                .withProperty(PREFIX + "circuit-breaker.wait-duration-in-open-state", "50ms")
+                .withProperty(PREFIX + "circuit-breaker.permitted-calls-in-half-open-state", "2");
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        Client counting = (request, options) -> {
+            upstreamCalls.incrementAndGet();
+            return delegate.execute(request, options);
+        };
+        return new CircuitBreakerClient(counting, new FeignClientProperties(env, "breaker-test"), meterRegistry,
+                transitions::add);
+    }
+
+    static Response response(Request request, int status) {
+        return Response.builder().status(status).request(request).headers(Map.of()).build();
+    }
+
+    Response call(Client client) throws IOException {
+        return client.execute(request, new Request.Options());
+    }
+
+    void callIgnoringFailures(Client client, int times) {
+        for (int i = 0; i < times; i++) {
+            try {
+                call(client);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Test
+    void shouldOpenOnFailureRateAndFailFastWithoutCallingUpstream() throws Exception {
+        var failing = new AtomicInteger();
+        var client = breaker((request, options) -> {
+            if (failing.getAndIncrement() % 2 == 0) {
+                throw new ConnectException("Connection refused");
+            }
+            return response(request, 503);
+        });
+
+        callIgnoringFailures(client, 3);
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+        callIgnoringFailures(client, 1);
+
+        assertThat(client.state()).isEqualTo(State.OPEN);
+        assertThatThrownBy(() -> call(client))
+                .isInstanceOf(CircuitBreakerOpenException.class)
+                .hasMessage("Circuit breaker OPEN for: breaker-test");
+        assertThat(upstreamCalls).hasValue(4);
+        assertThat(transitions).containsExactly(new Transition("breaker-test", State.CLOSED, State.OPEN));
+        assertThat(meterRegistry.get("feign.client.circuit-breaker.calls").tag("outcome", "rejected").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.circuit-breaker.transitions").tag("to", "open").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.circuit-breaker.state").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStayClosedBelowTheFailureRate() throws Exception {
+        var calls = new AtomicInteger();
+        var client = breaker((request, options) -> response(request, calls.incrementAndGet() % 3 == 0 ? 500 : 200));
+
+        for (int i = 0; i < 30; i++) {
+            call(client);
+        }
+
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+        assertThat(meterRegistry.get("feign.client.circuit-breaker.failure.rate").gauge().value()).isEqualTo(40);
+    }
+
+    @Test
+    void shouldOpenOnSlowCallRate() throws Exception {
+        var client = breaker((request, options) -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response(request, 200);
+        }, "circuit-breaker.slow-call-duration-threshold", "1ms", "circuit-breaker.slow-call-rate-threshold", "75");
+
+        for (int i = 0; i < 4; i++) {
+            call(client);
+        }
+
+        assertThat(client.state()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void shouldCloseAfterSuccessfulProbesOrReopenAfterFailedOnes() throws Exception {
+        var healthy = new AtomicInteger();
+        var client = breaker((request, options) -> response(request, healthy.get() > 0 ? 200 : 500));
+        for (int i = 0; i < 4; i++) {
+            call(client);
+        }
+        assertThat(client.state()).isEqualTo(State.OPEN);
+
+        Thread.sleep(60);
+        call(client);
+        call(client);
+        assertThat(client.state()).isEqualTo(State.OPEN);
+
+        healthy.set(1);
+        Thread.sleep(60);
+        assertThat(call(client).status()).isEqualTo(200);
+        assertThat(client.state()).isEqualTo(State.HALF_OPEN);
+        call(client);
+
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+        assertThat(transitions).extracting(Transition::to)
+                .containsExactly(State.OPEN, State.HALF_OPEN, State.OPEN, State.HALF_OPEN, State.CLOSED);
+    }
+
+    @Test
+    void shouldOnlyLetPermittedProbesThroughWhileHalfOpen() throws Exception {
+        var release = new CountDownLatch(1);
+        var fail = new AtomicInteger(1);
+        var client = breaker((request, options) -> {
+            if (fail.get() > 0) {
+                return response(request, 500);
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response(request, 200);
+        }, "circuit-breaker.permitted-calls-in-half-open-state", "1");
+        for (int i = 0; i < 4; i++) {
+            call(client);
+        }
+        fail.set(0);
+        Thread.sleep(60);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var probe = executor.submit(() -> call(client));
+            while (client.state() != State.HALF_OPEN || upstreamCalls.get() < 5) {
+                Thread.sleep(1);
+            }
+            assertThatThrownBy(() -> call(client))
+                    .isInstanceOf(CircuitBreakerOpenException.class)
+                    .hasMessage("Circuit breaker HALF_OPEN for: breaker-test");
+            release.countDown();
+            assertThat(probe.get(5, TimeUnit.SECONDS).status()).isEqualTo(200);
+        }
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void shouldIgnoreExceptionsThatAreNotUpstreamFailures() {
+        var client = breaker((request, options) -> {
+            throw new ConcurrencyLimitExceededException("breaker-test", 1);
+        });
+
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> call(client)).isInstanceOf(ConcurrencyLimitExceededException.class);
+        }
+
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+        assertThat(meterRegistry.get("feign.client.circuit-breaker.failure.rate").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldNotWedgeHalfOpenWhenAProbeFailsWithAnUnexpectedThrowable() throws Exception {
+        var mode = new AtomicInteger(500);
+        var client = breaker((request, options) -> switch (mode.get()) {
+            case 0 -> throw new AssertionError("probe failed");
+            default -> response(request, mode.get());
+        });
+        for (int i = 0; i < 4; i++) {
+            call(client);
+        }
+        assertThat(client.state()).isEqualTo(State.OPEN);
+
+        mode.set(0);
+        Thread.sleep(60);
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> call(client)).isInstanceOf(AssertionError.class);
+        }
+        assertThat(client.state()).isEqualTo(State.HALF_OPEN);
+
+        mode.set(200);
+        call(client);
+        call(client);
+
+        assertThat(client.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void shouldKeepPackedTotalsOfTheLastCallsOnly() {
+        var window = new CircuitBreakerClient.Window(3);
+
+        window.record(CircuitBreakerClient.Window.FAILED);
+        window.record(CircuitBreakerClient.Window.FAILED | CircuitBreakerClient.Window.SLOW);
+        window.record(0);
+        long totals = window.record(CircuitBreakerClient.Window.SLOW);
+
+        assertThat(CircuitBreakerClient.Window.calls(totals)).isEqualTo(3);
+        assertThat(CircuitBreakerClient.Window.count(totals, CircuitBreakerClient.Window.FAILED)).isEqualTo(1);
+        assertThat(CircuitBreakerClient.Window.count(totals, CircuitBreakerClient.Window.SLOW)).isEqualTo(2);
+    }
+}
@@ -2,6 +2,8 @@ package tech.elethoughts.courses.cloud.feign.infrastructure;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import feign.FeignException;
+import feign.Request;
+import feign.Response;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,10 @@ import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -43,6 +49,7 @@ class FeignClientConfigTest {
                 () -> "application/json");
         registry.add("spring.cloud.openfeign.client.config.pokemon-custom-config.default-request-headers.User-Agent",
                 () -> "spring-cloud-openfeign-demo");
+        registry.add("spring.cloud.openfeign.client.config.pokemon-custom-config.error-body.max-bytes", () -> "1024");
     }
 
     @Test
@@ -112,4 +119,48 @@ class FeignClientConfigTest {
         assertThatThrownBy(() -> client.getByName("ditto"))
                 .isInstanceOf(FeignException.class);
     }
+
+    @Test
+    void shouldCaptureErrorBodyUpToMaxBytes() {
+        wireMock.stubFor(get("/api/v2/pokemon/huge-error")
+                .willReturn(aResponse().withStatus(400).withBody("x".repeat(1024 * 1024))));
+
+        assertThatThrownBy(() -> client.getByName("huge-error"))
+                .isInstanceOfSatisfying(CustomHttpException.class, ex -> {
+                    assertThat(ex.body()).hasSize(1024);
+                    assertThat(ex.bodyTruncated()).isTrue();
+                });
+    }
+
+    @Test
+    void shouldDecodeErrorBodyWithResponseCharset() {
+        wireMock.stubFor(get("/api/v2/pokemon/flabebe")
+                .willReturn(aResponse().withStatus(404)
+                        .withHeader("Content-Type", "text/plain; charset=ISO-8859-1")
+                        .withBody("Flabébé not found".getBytes(StandardCharsets.ISO_8859_1))));
+
+        assertThatThrownBy(() -> client.getByName("flabebe"))
+                .isInstanceOfSatisfying(CustomHttpException.class, ex -> {
+                    assertThat(ex.body()).isEqualTo("Flabébé not found");
+                    assertThat(ex.bodyTruncated()).isFalse();
+                });
+    }
+
+    @Test
+    void shouldCaptureBodyOfUnknownLengthAndDrainTheRest() throws Exception {
+        var stream = new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8));
+        var response = Response.builder()
+                .status(400)
+                .headers(Map.of())
+                .body(stream, null)
+                .request(Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/x", Map.of(), null,
+                        StandardCharsets.UTF_8, null))
+                .build();
+
+        var ex = FeignClientConfig.captureBody(400, "PokeApiClient#getByName(String)", response, 4, 1024);
+
+        assertThat(ex.body()).isEqualTo("0123");
+        assertThat(ex.bodyTruncated()).isTrue();
+        assertThat(stream.available()).isZero();
+    }
 }
@@ -0,0 +1,60 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeignClientPropertiesTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.pokemon-hc5.";
+
+    @Test
+    void shouldBindTypedSnapshot() {
+        var env = new MockEnvironment()
+                .withProperty(PREFIX + "proxy.enabled", "true")
+                .withProperty(PREFIX + "proxy.host", "localhost")
+                .withProperty(PREFIX + "proxy.port", "8888")
+                .withProperty(PREFIX + "tls.trust-store-password", "changeit");
+
+        var properties = new FeignClientProperties(env, "pokemon-hc5");
+
+        assertThat(properties.snapshot()).isEqualTo(new FeignClientProperties.Snapshot(
+                true, "localhost", 8888, false, null, "changeit", null, "", true));
+        assertThat(properties.getTrustStorePassword()).containsExactly('c', 'h', 'a', 'n', 'g', 'e', 'i', 't');
+    }
+
+    @Test
+    void shouldReadValuesOnce() {
+        var env = new MockEnvironment().withProperty(PREFIX + "proxy.port", "8888");
+        var properties = new FeignClientProperties(env, "pokemon-hc5");
+        assertThat(properties.getInt("pool.size", 10)).isEqualTo(10);
+        assertThat(properties.getMap("routes", InstrumentedHttpClientConnectionManager.RouteSettings.class)).isEmpty();
+
+        env.setProperty(PREFIX + "proxy.port", "9999");
+        env.setProperty(PREFIX + "pool.size", "20");
+        env.setProperty(PREFIX + "routes.localhost.max-connections", "5");
+
+        assertThat(properties.getProxyPort()).isEqualTo(8888);
+        assertThat(properties.getInt("pool.size", 10)).isEqualTo(10);
+        assertThat(properties.getMap("routes", InstrumentedHttpClientConnectionManager.RouteSettings.class)).isEmpty();
+    }
+
+    @Test
+    void shouldBindMapsKeyedByDottedHostNames() {
+        var env = new MockEnvironment()
+                .withProperty(PREFIX + "routes[pokeapi.co].max-connections", "20")
+                .withProperty(PREFIX + "routes[pokeapi.co].socket-timeout", "2s")
+                .withProperty(PREFIX + "routes.localhost.time-to-live", "1m");
+
+        var routes = new FeignClientProperties(env, "pokemon-hc5")
+                .getMap("routes", InstrumentedHttpClientConnectionManager.RouteSettings.class);
+
+        assertThat(routes).containsOnlyKeys("pokeapi.co", "localhost");
+        assertThat(routes.get("pokeapi.co")).isEqualTo(new InstrumentedHttpClientConnectionManager.RouteSettings(
+                20, Duration.ofSeconds(2), null, null));
+        assertThat(routes.get("localhost").timeToLive()).isEqualTo(Duration.ofMinutes(1));
+    }
+}
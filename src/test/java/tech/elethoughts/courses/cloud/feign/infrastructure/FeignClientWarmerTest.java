@@ -0,0 +1,97 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.openfeign.FeignClientFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeignClientWarmerTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.warmup-test.";
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final MockEnvironment env = new MockEnvironment();
+    final FeignClientWarmer warmer = new FeignClientWarmer(new FeignClientFactory(), env,
+            new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+
+    FeignClientProperties properties(String... properties) {
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        return new FeignClientProperties(env, "warmup-test");
+    }
+
+    static Response response(Request request, byte[] body) {
+        return Response.builder().status(200).request(request).headers(Map.of()).body(body).build();
+    }
+
+    @Test
+    void shouldSendTheWarmUpRequestsConcurrently() {
+        var arrived = new CountDownLatch(3);
+        List<Request> requests = new CopyOnWriteArrayList<>();
+        Client client = (request, options) -> {
+            requests.add(request);
+            arrived.countDown();
+            try {
+                // Only returns if all the requests are in flight at once, i.e. on distinct connections
+                assertThat(arrived.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response(request, new byte[0]);
+        };
+
+        int warmed = warmer.warm(client, properties("warmup.connections", "3"), "http://localhost/health");
+
+        assertThat(warmed).isEqualTo(3);
+        assertThat(requests).allSatisfy(request -> {
+            assertThat(request.httpMethod()).isEqualTo(Request.HttpMethod.HEAD);
+            assertThat(request.url()).isEqualTo("http://localhost/health");
+        });
+        assertThat(meterRegistry.get("feign.client.warmup").tag("client", "warmup-test").tag("outcome", "success")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDrainTheBodySoTheConnectionGoesBackToThePool() {
+        var body = new ByteArrayInputStream(new byte[1024]);
+        Client client = (request, options) -> Response.builder().status(200).request(request).headers(Map.of())
+                .body(body, 1024).build();
+
+        warmer.warm(client, properties("warmup.connections", "1", "warmup.method", "GET"), "http://localhost/");
+
+        assertThat(body.available()).isZero();
+    }
+
+    @Test
+    void shouldReportFailuresWithoutThrowing() {
+        var attempts = new AtomicInteger();
+        Client client = (request, options) -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new ConnectException("Connection refused");
+            }
+            return response(request, new byte[0]);
+        };
+
+        int warmed = warmer.warm(client, properties("warmup.connections", "2"), "http://localhost/");
+
+        assertThat(warmed).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.warmup").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,187 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingClientTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.hedging-test.";
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch primaryCancelled = new CountDownLatch(1);
+
+    HedgingClient hedging(Client delegate, String... properties) {
+        var env = new MockEnvironment().withProperty(PREFIX + "hedging.delay", "20ms");
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        Client counting = (request, options) -> {
+            calls.incrementAndGet();
+            return delegate.execute(request, options);
+        };
+        return new HedgingClient(counting, new FeignClientProperties(env, "hedging-test"), meterRegistry);
+    }
+
+    static Request request(Request.HttpMethod method) {
+        return Request.create(method, "http://localhost/api/v2/pokemon/pikachu", Map.of(), null,
+                StandardCharsets.UTF_8, null);
+    }
+
+    static Response response(Request request, String body) {
+        return Response.builder().status(200).request(request).headers(Map.of())
+                .body(body, StandardCharsets.UTF_8).build();
+    }
+
+    // First attempt hangs until interrupted, the next ones answer right away
+    Client slowFirstAttempt() {
+        var attempts = new AtomicInteger();
+        return (request, options) -> {
+            if (attempts.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    primaryCancelled.countDown();
+                    throw new InterruptedIOException("cancelled");
+                }
+            }
+            return response(request, "attempt-" + attempts.get());
+        };
+    }
+
+    static String body(Response response) throws IOException {
+        return new String(response.body().asInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    double hedges(String outcome) {
+        return meterRegistry.get("feign.client.hedging.hedges").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void shouldNotHedgeFastResponses() throws Exception {
+        var client = hedging((request, options) -> response(request, "fast"));
+
+        var response = client.execute(request(Request.HttpMethod.GET), new Request.Options());
+
+        assertThat(body(response)).isEqualTo("fast");
+        assertThat(calls).hasValue(1);
+        assertThat(hedges("won") + hedges("lost")).isZero();
+    }
+
+    @Test
+    void shouldReturnTheHedgeAndCancelTheSlowAttempt() throws Exception {
+        var client = hedging(slowFirstAttempt());
+
+        long start = System.nanoTime();
+        var response = client.execute(request(Request.HttpMethod.GET), new Request.Options());
+
+        assertThat(body(response)).isEqualTo("attempt-2");
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(primaryCancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(calls).hasValue(2);
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldWaitForTheSlowAttemptOnceTheBudgetIsSpent() throws Exception {
+        var client = hedging((request, options) -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("cancelled");
+            }
+            return response(request, "slow");
+        }, "hedging.budget.max-tokens", "1", "hedging.budget.ratio", "0");
+
+        client.execute(request(Request.HttpMethod.GET), new Request.Options());
+        var response = client.execute(request(Request.HttpMethod.GET), new Request.Options());
+
+        assertThat(body(response)).isEqualTo("slow");
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("feign.client.hedging.skipped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFallBackOnTheHedgeWhenTheFirstAttemptFails() throws Exception {
+        var attempts = new AtomicInteger();
+        var hedgeSent = new CountDownLatch(1);
+        var client = hedging((request, options) -> {
+            if (attempts.getAndIncrement() == 0) {
+                try {
+                    hedgeSent.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new ConnectException("Connection reset");
+            }
+            hedgeSent.countDown();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("cancelled");
+            }
+            return response(request, "hedge");
+        });
+
+        var response = client.execute(request(Request.HttpMethod.GET), new Request.Options());
+
+        assertThat(body(response)).isEqualTo("hedge");
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotHedgeNonIdempotentMethods() throws Exception {
+        var client = hedging((request, options) -> {
+            try {
+                Thread.sleep(40);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("cancelled");
+            }
+            return response(request, "created");
+        });
+
+        client.execute(request(Request.HttpMethod.POST), new Request.Options());
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void shouldMeasureHedgedCallsFromTheirFirstAttempt() throws Exception {
+        var env = new MockEnvironment()
+                .withProperty(PREFIX + "hedging.window", "1")
+                .withProperty(PREFIX + "hedging.min-delay", "20ms");
+        var client = new HedgingClient(slowFirstAttempt(), new FeignClientProperties(env, "hedging-test"),
+                meterRegistry);
+
+        var response = client.execute(request(Request.HttpMethod.GET), new Request.Options());
+
+        assertThat(body(response)).isEqualTo("attempt-2");
+        assertThat(client.hedgeDelayNanos()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void shouldDeriveTheDelayFromObservedLatencies() {
+        var window = new HedgingClient.LatencyWindow(100, 0.95);
+
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+
+        assertThat(window.quantile()).isEqualTo(95);
+    }
+}
@@ -0,0 +1,142 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Http2ExecutorsTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.executor-test.";
+
+    @RegisterExtension
+    static WireMockExtension server = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final MockEnvironment env = new MockEnvironment();
+
+    FeignClientProperties properties(String... properties) {
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        return new FeignClientProperties(env, "executor-test");
+    }
+
+    double gauge(String name) {
+        return meterRegistry.get(name).tag("client", "executor-test").gauge().value();
+    }
+
+    // Occupies every thread of the pool and its whole queue until release
+    static void saturate(ExecutorService executor, int maxThreads, int queueCapacity, CountDownLatch release)
+            throws InterruptedException {
+        var running = new CountDownLatch(maxThreads);
+        Runnable blocking = () -> {
+            running.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        for (int i = 0; i < maxThreads; i++) {
+            executor.execute(blocking);
+        }
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < queueCapacity; i++) {
+            executor.execute(blocking);
+        }
+    }
+
+    @Test
+    void shouldKeepTheClientsOwnExecutorByDefault() {
+        assertThat(Http2Executors.create(properties(), env, meterRegistry)).isNull();
+    }
+
+    @Test
+    void shouldUseVirtualThreadsWhenTheApplicationDoes() throws Exception {
+        env.setProperty("spring.threads.virtual.enabled", "true");
+        var executor = Http2Executors.create(properties(), env, meterRegistry);
+
+        assertThat(executor.submit(() -> Thread.currentThread().isVirtual()).get()).isTrue();
+        assertThat(meterRegistry.get("feign.client.http2.executor").tag("client", "executor-test").timer().count())
+                .isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldBoundThreadsAndQueueAndPublishTheirDepth() throws Exception {
+        var executor = Http2Executors.create(properties("http2.executor.type", "bounded",
+                "http2.executor.max-threads", "2", "http2.executor.queue-capacity", "1"), env, meterRegistry);
+        var release = new CountDownLatch(1);
+        saturate(executor, 2, 1, release);
+
+        assertThat(gauge("feign.client.http2.executor.active")).isEqualTo(2);
+        assertThat(gauge("feign.client.http2.executor.queued")).isEqualTo(1);
+        assertThat(gauge("feign.client.http2.executor.pool.max")).isEqualTo(2);
+        assertThat(executor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("feign.client.http2.executor.overflow").tag("client", "executor-test")
+                .counter().count()).isEqualTo(1);
+
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void shouldKeepTheClientWorkingWhenThePoolAndQueueAreFull() throws Exception {
+        server.stubFor(get("/api/v2/pokemon/pikachu").willReturn(ok("pikachu")));
+        var executor = Http2Executors.create(properties("http2.executor.type", "bounded",
+                "http2.executor.max-threads", "1", "http2.executor.queue-capacity", "1"), env, meterRegistry);
+        var request = HttpRequest.newBuilder(URI.create(server.baseUrl() + "/api/v2/pokemon/pikachu")).build();
+        var release = new CountDownLatch(1);
+
+        try (var client = HttpClient.newBuilder().executor(executor).build()) {
+            saturate(executor, 1, 1, release);
+            assertThat(client.send(request, HttpResponse.BodyHandlers.ofString()).body()).isEqualTo("pikachu");
+            release.countDown();
+
+            assertThat(client.send(request, HttpResponse.BodyHandlers.ofString()).body()).isEqualTo("pikachu");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertThat(meterRegistry.get("feign.client.http2.executor.overflow").tag("client", "executor-test")
+                .counter().count()).isPositive();
+    }
+
+    @Test
+    void shouldShareOnePoolBetweenClients() {
+        var first = Http2Executors.create(properties("http2.executor.type", "shared"), env, meterRegistry);
+        var other = Http2Executors.create(new FeignClientProperties(new MockEnvironment()
+                .withProperty("spring.cloud.openfeign.client.config.other.http2.executor.type", "shared"), "other"),
+                env, meterRegistry);
+
+        assertThat(other).isSameAs(first);
+        assertThat(Http2Executors.isShared(properties())).isTrue();
+    }
+
+    @Test
+    void shouldRejectUnknownTypes() {
+        assertThatThrownBy(() -> Http2Executors.create(properties("http2.executor.type", "forkjoin"), env, meterRegistry))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("forkjoin");
+    }
+}
@@ -0,0 +1,84 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstrumentedConnectionFactoryTest {
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    ServerSocket server;
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+    }
+
+    double connections(String event) {
+        return meterRegistry.get("feign.client.pool.connections").tag("client", "stale-test").tag("event", event)
+                .counter().count();
+    }
+
+    static String get(CloseableHttpClient httpClient, String url) throws IOException {
+        return httpClient.execute(new HttpGet(url), response -> EntityUtils.toString(response.getEntity()));
+    }
+
+    /**
+     * Answers each connection once with keep-alive, then closes it, as a load balancer dropping idle connections.
+     */
+    void startClosingServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().start(() -> {
+            while (!server.isClosed()) {
+                try (var socket = server.accept()) {
+                    var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                    for (var line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+                        // request headers
+                    }
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+                            .getBytes(StandardCharsets.US_ASCII));
+                    socket.getOutputStream().flush();
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        });
+    }
+
+    @Test
+    void shouldCountConnectionsFoundStaleOnLease() throws Exception {
+        startClosingServer();
+        var manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setConnectionFactory(new InstrumentedConnectionFactory("stale-test", meterRegistry))
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setValidateAfterInactivity(TimeValue.ZERO_MILLISECONDS)
+                        .build())
+                .build();
+        var url = "http://localhost:" + server.getLocalPort() + "/";
+
+        try (var httpClient = HttpClients.custom().setConnectionManager(manager).build()) {
+            assertThat(get(httpClient, url)).isEqualTo("ok");
+            Thread.sleep(100);
+            assertThat(get(httpClient, url)).isEqualTo("ok");
+        }
+
+        assertThat(connections("created")).isEqualTo(2);
+        assertThat(connections("stale")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,119 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tech.elethoughts.courses.cloud.feign.infrastructure.InstrumentedHttpClientConnectionManager.RouteSettings;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InstrumentedHttpClientConnectionManagerTest {
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final HttpRoute route = new HttpRoute(new HttpHost("https", "pokeapi.co", 443));
+    final InstrumentedHttpClientConnectionManager manager = new InstrumentedHttpClientConnectionManager(
+            PoolingHttpClientConnectionManagerBuilder.create().setMaxConnTotal(10).setMaxConnPerRoute(2).build(),
+            "pool-test", meterRegistry);
+
+    @AfterEach
+    void close() {
+        manager.close();
+    }
+
+    double gauge(String name) {
+        return meterRegistry.get(name).tag("client", "pool-test").gauge().value();
+    }
+
+    @Test
+    void shouldPublishTotalAndPerRouteStats() throws Exception {
+        var first = manager.lease("1", route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+        manager.lease("2", route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+
+        assertThat(gauge("feign.client.pool.leased")).isEqualTo(2);
+        assertThat(gauge("feign.client.pool.max")).isEqualTo(10);
+        assertThat(meterRegistry.get("feign.client.pool.route.leased").tag("route", "https://pokeapi.co:443")
+                .gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("feign.client.pool.route.max").tag("route", "https://pokeapi.co:443")
+                .gauge().value()).isEqualTo(2);
+
+        manager.release(first, null, TimeValue.ZERO_MILLISECONDS);
+
+        assertThat(gauge("feign.client.pool.leased")).isEqualTo(1);
+        assertThat(meterRegistry.get("feign.client.pool.lease.wait").tag("outcome", "acquired").timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void shouldTimeLeasesThatTimeOutOnAnExhaustedRoute() throws Exception {
+        manager.lease("1", route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+        manager.lease("2", route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+
+        assertThatThrownBy(() -> manager.lease("3", route, Timeout.ofMilliseconds(50), null).get(Timeout.ofMilliseconds(50)))
+                .isInstanceOf(TimeoutException.class);
+
+        var timedOut = meterRegistry.get("feign.client.pool.lease.wait").tag("outcome", "timeout").timer();
+        assertThat(timedOut.count()).isEqualTo(1);
+        assertThat(timedOut.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(40);
+    }
+
+    @Test
+    void shouldSnapshotThePoolPerRoute() throws Exception {
+        manager.lease("1", route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+
+        assertThat(manager.snapshot()).isEqualTo(new InstrumentedHttpClientConnectionManager.PoolSnapshot(1, 0, 0, 10,
+                Map.of("https://pokeapi.co:443", new InstrumentedHttpClientConnectionManager.PoolSnapshot(1, 0, 0, 2, Map.of()))));
+    }
+
+    @Test
+    void shouldCapASlowRouteWithoutStarvingOthers() throws Exception {
+        var limited = new InstrumentedHttpClientConnectionManager(
+                PoolingHttpClientConnectionManagerBuilder.create().setMaxConnTotal(10).setMaxConnPerRoute(5).build(),
+                "route-test", meterRegistry, Map.of("slow.example", new RouteSettings(1, null, null, null)));
+        var slow = new HttpRoute(new HttpHost("https", "slow.example", 443));
+        try (limited) {
+            limited.lease("1", slow, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+
+            assertThatThrownBy(() -> limited.lease("2", slow, Timeout.ofMilliseconds(50), null).get(Timeout.ofMilliseconds(50)))
+                    .isInstanceOf(TimeoutException.class);
+            for (int i = 0; i < 5; i++) {
+                limited.lease("fast-" + i, route, Timeout.ofSeconds(1), null).get(Timeout.ofSeconds(1));
+            }
+            assertThat(limited.getMaxPerRoute(slow)).isEqualTo(1);
+            assertThat(limited.getMaxPerRoute(route)).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void shouldReplaceTheRequestResponseTimeoutWithTheRouteSocketTimeout() throws Exception {
+        var limited = new InstrumentedHttpClientConnectionManager(PoolingHttpClientConnectionManagerBuilder.create().build(),
+                "route-test", meterRegistry, Map.of("localhost", new RouteSettings(null, Duration.ofMillis(200), null, null)));
+        // Connections are accepted by the backlog but never answered
+        try (var silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             var httpClient = HttpClients.custom().setConnectionManager(limited).build()) {
+            var request = new HttpGet("http://localhost:" + silent.getLocalPort() + "/");
+            request.setConfig(RequestConfig.custom().setResponseTimeout(Timeout.ofSeconds(10)).build());
+            long start = System.nanoTime();
+
+            assertThatThrownBy(() -> httpClient.execute(request, response -> null))
+                    .isInstanceOf(SocketTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Collections;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class KeyMaterialReloadTest {
+
+    @RegisterExtension
+    static WireMockExtension httpsServer = WireMockExtension.newInstance()
+            .options(wireMockConfig()
+                    .dynamicHttpsPort()
+                    .httpDisabled(true)
+                    .keystorePath("src/test/resources/wiremock-keystore.p12")
+                    .keystorePassword("changeit")
+                    .keyManagerPassword("changeit")
+                    .keystoreType("PKCS12"))
+            .build();
+
+    @TempDir
+    Path certs;
+
+    @Test
+    void shouldPickUpRotatedTrustStoreWithoutNewContext() throws Exception {
+        httpsServer.stubFor(get("/api/v2/pokemon/mew").willReturn(okJson("""
+                {"id": 151, "name": "mew", "height": 4, "weight": 40}
+                """)));
+        var trustStore = certs.resolve("truststore.p12");
+        writeEmptyStore(trustStore);
+
+        var env = new MockEnvironment()
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-reload.tls.trust-store", trustStore.toUri().toString())
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-reload.tls.trust-store-password", "changeit")
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-reload.tls.reload.enabled", "true");
+        var registry = new SslContextRegistry();
+        var sslContext = registry.getOrCreate(new FeignClientProperties(env, "pokemon-reload"));
+
+        assertThatThrownBy(() -> fetch(sslContext)).isInstanceOf(SSLHandshakeException.class);
+
+        Files.copy(Path.of("src/test/resources/wiremock-truststore.p12"), trustStore, StandardCopyOption.REPLACE_EXISTING);
+
+        await().atMost(Duration.ofSeconds(10)).ignoreExceptions()
+                .untilAsserted(() -> assertThat(fetch(sslContext)).contains("mew"));
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStopResumingSessionsMadeWithTheRotatedTrustStore() throws Exception {
+        httpsServer.stubFor(get("/api/v2/pokemon/mew").willReturn(okJson("""
+                {"id": 151, "name": "mew", "height": 4, "weight": 40}
+                """)));
+        var trustStore = certs.resolve("truststore.p12");
+        Files.copy(Path.of("src/test/resources/wiremock-truststore.p12"), trustStore);
+
+        var env = new MockEnvironment()
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-revoke.tls.trust-store", trustStore.toUri().toString())
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-revoke.tls.trust-store-password", "changeit")
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-revoke.tls.reload.enabled", "true");
+        var sslContext = new SslContextRegistry().getOrCreate(new FeignClientProperties(env, "pokemon-revoke"));
+
+        assertThat(fetch(sslContext)).contains("mew");
+        assertThat(Collections.list(sslContext.getClientSessionContext().getIds())).isNotEmpty();
+
+        writeEmptyStore(trustStore);
+
+        await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThatThrownBy(() -> fetch(sslContext)).isInstanceOf(SSLHandshakeException.class));
+    }
+
+    @Test
+    void shouldResolveAnAliasAgainstTheKeyStoreThatChoseIt() throws Exception {
+        var keyManager = new ReloadableX509KeyManager(keyManager(Path.of("src/test/resources/wiremock-keystore.p12")));
+        var alias = keyManager.chooseServerAlias("RSA", null, null);
+
+        var emptyStore = certs.resolve("empty.p12");
+        writeEmptyStore(emptyStore);
+        keyManager.setDelegate(keyManager(emptyStore));
+
+        assertThat(alias).isNotNull();
+        assertThat(keyManager.getCertificateChain(alias)).isNotEmpty();
+        assertThat(keyManager.getPrivateKey(alias)).isNotNull();
+        assertThat(keyManager.chooseServerAlias("RSA", null, null)).isNull();
+    }
+
+    static X509ExtendedKeyManager keyManager(Path path) throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var in = Files.newInputStream(path)) {
+            keyStore.load(in, "changeit".toCharArray());
+        }
+        var kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, "changeit".toCharArray());
+        return (X509ExtendedKeyManager) kmf.getKeyManagers()[0];
+    }
+
+    String fetch(SSLContext sslContext) throws Exception {
+        try (var client = HttpClient.newBuilder().sslContext(sslContext).build()) {
+            return client.send(HttpRequest.newBuilder(URI.create(
+                            "https://localhost:" + httpsServer.getHttpsPort() + "/api/v2/pokemon/mew")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        }
+    }
+
+    static void writeEmptyStore(Path path) throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        try (var out = Files.newOutputStream(path)) {
+            keyStore.store(out, "changeit".toCharArray());
+        }
+    }
+}
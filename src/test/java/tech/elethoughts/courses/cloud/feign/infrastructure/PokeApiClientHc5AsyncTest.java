@@ -0,0 +1,83 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringJUnitConfig(classes = PokeApiClientHc5AsyncTest.TestConfig.class)
+class PokeApiClientHc5AsyncTest extends AbstractSecurePokemonClientTlsTest {
+
+    @Configuration
+    @Import(FeignAsyncApacheHttpClient5Config.class)
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class TestConfig {
+    }
+
+    @RegisterExtension
+    static WireMockExtension httpsServer = WireMockExtension.newInstance()
+            .options(wireMockConfig()
+                    .dynamicHttpsPort()
+                    .httpDisabled(true)
+                    .keystorePath("src/test/resources/wiremock-keystore.p12")
+                    .keystorePassword("changeit")
+                    .keyManagerPassword("changeit")
+                    .keystoreType("PKCS12"))
+            .build();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        configureTlsProperties(registry, FeignAsyncApacheHttpClient5Config.CLIENT_NAME, httpsServer);
+    }
+
+    @Autowired
+    PokeApiClientHc5Async client;
+
+    @BeforeEach
+    void setUp() {
+        httpsServer.stubFor(get("/api/v2/pokemon/mewtwo")
+                .willReturn(okJson("""
+                        {"id": 150, "name": "mewtwo", "height": 20, "weight": 1220}
+                        """)));
+    }
+
+    @Test
+    void shouldCompleteFutureWithPokemon() {
+        Pokemon pokemon = client.getByNameAsync("mewtwo").join();
+
+        assertThat(pokemon.name()).isEqualTo("mewtwo");
+    }
+
+    @Test
+    void shouldServeBlockingMethodsThroughTheSameEngine() {
+        assertThat(client.getByName("mewtwo").id()).isEqualTo(150);
+    }
+
+    @Test
+    void shouldRunConcurrentCallsWithoutCallerThreads() {
+        var futures = IntStream.range(0, 64)
+                .mapToObj(_ -> client.getByNameAsync("mewtwo"))
+                .toList();
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(futures).allSatisfy(f -> assertThat(f.join().weight()).isEqualTo(1220));
+        httpsServer.verify(64, getRequestedFor(urlEqualTo("/api/v2/pokemon/mewtwo")));
+    }
+}
@@ -0,0 +1,238 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PooledHttpClientTest {
+
+    static final String PREFIX = "spring.cloud.openfeign.client.config.pooled-test.";
+
+    @RegisterExtension
+    static WireMockExtension server = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PooledHttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        server.resetAll();
+        server.stubFor(get("/api/v2/pokemon/pikachu").willReturn(okJson("""
+                {"id": 25, "name": "pikachu", "height": 4, "weight": 60}
+                """)));
+    }
+
+    @AfterEach
+    void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    PooledHttpClient client(String... properties) {
+        var env = new MockEnvironment();
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(PREFIX + properties[i], properties[i + 1]);
+        }
+        client = new PooledHttpClient(null, null, Proxy.NO_PROXY, new FeignClientProperties(env, "pooled-test"),
+                new FeignHttpClientProperties(), meterRegistry);
+        return client;
+    }
+
+    static Request request(String url, Map<String, List<String>> headers) {
+        return Request.create(Request.HttpMethod.GET, url, Map.copyOf(headers), null, StandardCharsets.UTF_8, null);
+    }
+
+    static String body(Response response) throws IOException {
+        try (response) {
+            return new String(response.body().asInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    double connections(String event) {
+        return meterRegistry.get("feign.client.pool.connections").tag("event", event).counter().count();
+    }
+
+    @Test
+    void shouldReuseTheConnectionOnceTheBodyIsRead() throws Exception {
+        var client = client();
+        var url = server.baseUrl() + "/api/v2/pokemon/pikachu";
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(body(client.execute(request(url, Map.of()), new Request.Options()))).contains("pikachu");
+        }
+
+        assertThat(connections("created")).isEqualTo(1);
+        assertThat(connections("reused")).isEqualTo(2);
+        assertThat(client.snapshot().available()).isEqualTo(1);
+        assertThat(client.snapshot().leased()).isZero();
+    }
+
+    @Test
+    void shouldDecodeGzipResponses() throws Exception {
+        var client = client();
+        server.stubFor(get("/api/v2/pokemon/ditto").willReturn(okJson("{\"name\": \"" + "ditto".repeat(500) + "\"}")));
+
+        var response = client.execute(request(server.baseUrl() + "/api/v2/pokemon/ditto",
+                Map.of("Accept-Encoding", List.of("gzip"))), new Request.Options());
+
+        assertThat(response.headers().get("Content-Encoding")).containsExactly("gzip");
+        assertThat(body(response)).endsWith("ditto\"}");
+        client.execute(request(server.baseUrl() + "/api/v2/pokemon/pikachu", Map.of()), new Request.Options()).close();
+        assertThat(connections("reused")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldWaitForAConnectionUpToTheLeaseTimeout() throws Exception {
+        var client = client("pool.max-per-route", "1", "pool.lease-timeout", "50ms");
+        var url = server.baseUrl() + "/api/v2/pokemon/pikachu";
+        var unread = client.execute(request(url, Map.of()), new Request.Options());
+
+        assertThatThrownBy(() -> client.execute(request(url, Map.of()), new Request.Options()))
+                .isInstanceOf(InterruptedIOException.class)
+                .hasMessageContaining("Timeout waiting for a connection");
+        assertThat(meterRegistry.get("feign.client.pool.lease.wait").tag("outcome", "timeout").timer().count())
+                .isEqualTo(1);
+
+        assertThat(body(unread)).contains("pikachu");
+        assertThat(body(client.execute(request(url, Map.of()), new Request.Options()))).contains("pikachu");
+    }
+
+    @Test
+    void shouldEvictIdleConnections() throws Exception {
+        var client = client("pool.idle-timeout", "10ms");
+        body(client.execute(request(server.baseUrl() + "/api/v2/pokemon/pikachu", Map.of()), new Request.Options()));
+
+        Thread.sleep(20);
+        client.evictIdle();
+
+        assertThat(client.snapshot().available()).isZero();
+        assertThat(connections("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldResendOnANewConnectionWhenTheReusedOneWasClosed() throws Exception {
+        // Answers keep-alive but closes every connection after its response
+        try (var closing = new ServerSocket(0)) {
+            Thread.ofVirtual().start(() -> {
+                while (!closing.isClosed()) {
+                    try (var socket = closing.accept()) {
+                        var in = socket.getInputStream();
+                        var head = new StringBuilder();
+                        while (!head.toString().endsWith("\r\n\r\n")) {
+                            head.append((char) in.read());
+                        }
+                        socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok"
+                                .getBytes(StandardCharsets.ISO_8859_1));
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            var client = client("pool.validate-after-inactivity", "1h");
+            var url = "http://localhost:" + closing.getLocalPort() + "/";
+
+            assertThat(body(client.execute(request(url, Map.of()), new Request.Options()))).isEqualTo("ok");
+            Thread.sleep(50);
+            assertThat(body(client.execute(request(url, Map.of()), new Request.Options()))).isEqualTo("ok");
+
+            assertThat(connections("stale")).isEqualTo(1);
+            assertThat(connections("created")).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldNotResendWhenTheReusedConnectionTimesOut() throws Exception {
+        var client = client();
+        server.stubFor(get("/api/v2/pokemon/slowpoke").willReturn(okJson("{}").withFixedDelay(500)));
+        body(client.execute(request(server.baseUrl() + "/api/v2/pokemon/pikachu", Map.of()), new Request.Options()));
+        var options = new Request.Options(1, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS, true);
+
+        assertThatThrownBy(() -> client.execute(request(server.baseUrl() + "/api/v2/pokemon/slowpoke", Map.of()), options))
+                .isInstanceOf(SocketTimeoutException.class);
+
+        server.verify(1, getRequestedFor(urlEqualTo("/api/v2/pokemon/slowpoke")));
+        assertThat(connections("stale")).isZero();
+    }
+
+    @Test
+    void shouldRejectHeadersThatWouldSplitTheRequest() {
+        var client = client();
+        var url = server.baseUrl() + "/api/v2/pokemon/pikachu";
+
+        assertThatThrownBy(() -> client.execute(request(url, Map.of("X-Trainer", List.of("ash\r\nX-Admin: true"))),
+                new Request.Options()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("X-Trainer");
+        assertThatThrownBy(() -> client.execute(request(url, Map.of("X Trainer", List.of("ash"))), new Request.Options()))
+                .isInstanceOf(IllegalArgumentException.class);
+        server.verify(0, getRequestedFor(urlEqualTo("/api/v2/pokemon/pikachu")));
+    }
+
+    @Test
+    void shouldDropCredentialsWhenRedirectedToAnotherOrigin() throws Exception {
+        var client = client();
+        server.stubFor(get("/api/v2/pokemon/25").willReturn(aResponse().withStatus(302)
+                .withHeader("Location", "http://127.0.0.1:" + server.getPort() + "/api/v2/pokemon/pikachu")));
+
+        var response = client.execute(request("http://localhost:" + server.getPort() + "/api/v2/pokemon/25",
+                Map.of("Authorization", List.of("Bearer ash"), "X-Trainer", List.of("ash"))), new Request.Options());
+
+        assertThat(body(response)).contains("pikachu");
+        server.verify(getRequestedFor(urlEqualTo("/api/v2/pokemon/25")).withHeader("Authorization", equalTo("Bearer ash")));
+        server.verify(getRequestedFor(urlEqualTo("/api/v2/pokemon/pikachu"))
+                .withoutHeader("Authorization")
+                .withHeader("X-Trainer", equalTo("ash")));
+    }
+
+    @Test
+    void shouldRejectConflictingContentLengths() throws Exception {
+        try (var conflicting = new ServerSocket(0)) {
+            Thread.ofVirtual().start(() -> {
+                try (var socket = conflicting.accept()) {
+                    var in = socket.getInputStream();
+                    var head = new StringBuilder();
+                    while (!head.toString().endsWith("\r\n\r\n")) {
+                        head.append((char) in.read());
+                    }
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nContent-Length: 5\r\n\r\nok"
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                    socket.getOutputStream().flush();
+                    in.read();
+                } catch (IOException e) {
+                    // client gone
+                }
+            });
+            var client = client();
+
+            assertThatThrownBy(() -> client.execute(request("http://localhost:" + conflicting.getLocalPort() + "/",
+                    Map.of()), new Request.Options()))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Content-Length");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import feign.codec.DecodeException;
+import org.junit.jupiter.api.Test;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.elethoughts.courses.cloud.feign.infrastructure.StreamingJacksonDecoderTest.POKEAPI_JSON;
+import static tech.elethoughts.courses.cloud.feign.infrastructure.StreamingJacksonDecoderTest.response;
+
+class RecordProjectionDecoderTest {
+
+    record NamedResource(String name) {
+    }
+
+    record Stat(@JsonProperty("base_stat") int baseStat, NamedResource stat) {
+    }
+
+    record PokemonDetails(long id, NamedResource species, List<Stat> stats,
+                          @JsonProperty("base_experience") Integer baseExperience, boolean legendary) {
+    }
+
+    record Measures(float weight, short order, byte generation, char tier, double height) {
+    }
+
+    final RecordProjectionDecoder decoder = new RecordProjectionDecoder((response, type) -> "fallback");
+
+    @Test
+    void shouldProjectRecordSkippingUnmappedSubtrees() throws Exception {
+        var pokemon = decoder.decode(response(200, "application/json", POKEAPI_JSON), Pokemon.class);
+
+        assertThat(pokemon).isEqualTo(new Pokemon(25L, "pikachu", 4, 60));
+    }
+
+    @Test
+    void shouldProjectNestedRecordsListsAndRenamedComponents() throws Exception {
+        var json = """
+                {"id": 25, "species": {"name": "pikachu", "url": "https://pokeapi.co/api/v2/pokemon-species/25/"},
+                 "stats": [{"base_stat": 35, "effort": 0, "stat": {"name": "hp"}}], "base_experience": 112}
+                """;
+
+        var details = decoder.decode(response(200, "application/json", json), PokemonDetails.class);
+
+        assertThat(details).isEqualTo(new PokemonDetails(25, new NamedResource("pikachu"),
+                List.of(new Stat(35, new NamedResource("hp"))), 112, false));
+    }
+
+    @Test
+    void shouldLeaveDefaultsForMissingAndNullProperties() throws Exception {
+        var details = decoder.decode(response(200, "application/json", "{\"id\": null, \"species\": null}"),
+                PokemonDetails.class);
+
+        assertThat(details).isEqualTo(new PokemonDetails(0, null, null, null, false));
+    }
+
+    @Test
+    void shouldDelegateNonRecordTargetsAndNonJsonResponses() throws Exception {
+        assertThat(decoder.decode(response(200, "application/json", "[]"), List.class)).isEqualTo("fallback");
+        assertThat(decoder.decode(response(200, "text/plain", "pikachu"), Pokemon.class)).isEqualTo("fallback");
+        assertThat(decoder.decode(response(404, "application/json", "{}"), Pokemon.class)).isEqualTo("fallback");
+    }
+
+    @Test
+    void shouldRejectStructureWhereScalarIsExpected() {
+        assertThatThrownBy(() -> decoder.decode(response(200, "application/json", "{\"name\": {\"en\": \"pikachu\"}}"),
+                Pokemon.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("Expected a String in Pokemon");
+    }
+
+    @Test
+    void shouldRejectValuesOfTheWrongTypeNamingTheComponent() {
+        assertThatThrownBy(() -> decoder.decode(response(200, "application/json", "{\"id\": \"abc\"}"), Pokemon.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("Expected a Long in Pokemon")
+                .hasMessageContaining("\"id\"");
+        assertThatThrownBy(() -> decoder.decode(response(200, "application/json", "{\"legendary\": 1}"),
+                PokemonDetails.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("\"legendary\"");
+        assertThatThrownBy(() -> decoder.decode(response(200, "application/json", "{\"weight\": \"heavy\"}"),
+                Measures.class))
+                .isInstanceOf(DecodeException.class)
+                .hasMessageContaining("\"weight\"");
+    }
+
+    @Test
+    void shouldDecodeNullPrimitivesToTheirDefault() throws Exception {
+        var json = """
+                {"weight": null, "order": null, "generation": null, "tier": null, "height": null}
+                """;
+
+        assertThat(decoder.decode(response(200, "application/json", json), Measures.class))
+                .isEqualTo(new Measures(0f, (short) 0, (byte) 0, '\0', 0d));
+        assertThat(decoder.decode(response(200, "application/json", "{\"id\": \"25\", \"height\": 4.0}"),
+                Pokemon.class)).isEqualTo(new Pokemon(25L, null, 4, 0));
+    }
+}
@@ -0,0 +1,126 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedHttp2ClientTest {
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final List<Integer> calls = new ArrayList<>();
+
+    ShardedHttp2Client sharded(ShardedHttp2Client.Selection selection, Client... shards) {
+        return new ShardedHttp2Client(List.of(), List.of(shards), selection, "sharded-test", meterRegistry);
+    }
+
+    Client shard(int index) {
+        return (request, options) -> {
+            synchronized (calls) {
+                calls.add(index);
+            }
+            return Response.builder().status(200).request(request).headers(Map.of()).build();
+        };
+    }
+
+    static Request request() {
+        return Request.create(Request.HttpMethod.GET, "https://localhost/api/v2/pokemon/pikachu", Map.of(), null,
+                StandardCharsets.UTF_8, null);
+    }
+
+    @Test
+    void shouldRotateOverShardsRoundRobin() throws Exception {
+        var client = sharded(ShardedHttp2Client.Selection.ROUND_ROBIN, shard(0), shard(1), shard(2));
+
+        for (int i = 0; i < 6; i++) {
+            client.execute(request(), new Request.Options());
+        }
+
+        assertThat(calls).containsExactly(0, 1, 2, 0, 1, 2);
+    }
+
+    @Test
+    void shouldAvoidTheShardWithTheMostRequestsInFlight() throws Exception {
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Client slow = (request, options) -> {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Response.builder().status(200).request(request).headers(Map.of()).build();
+        };
+        var client = sharded(ShardedHttp2Client.Selection.LEAST_IN_FLIGHT, slow, shard(1));
+
+        var stuck = Thread.ofVirtual().start(() -> {
+            try {
+                client.execute(request(), new Request.Options());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            client.execute(request(), new Request.Options());
+        }
+
+        assertThat(calls).containsExactly(1, 1, 1, 1);
+        assertThat(meterRegistry.get("feign.client.http2.shard.in-flight").tag("shard", "0").gauge().value())
+                .isEqualTo(1);
+        release.countDown();
+        stuck.join();
+        assertThat(client.inFlight(0)).isZero();
+    }
+
+    @Test
+    void shouldParseSelectionNames() {
+        assertThat(ShardedHttp2Client.Selection.of("least-in-flight")).isEqualTo(ShardedHttp2Client.Selection.LEAST_IN_FLIGHT);
+        assertThat(ShardedHttp2Client.Selection.of("round-robin")).isEqualTo(ShardedHttp2Client.Selection.ROUND_ROBIN);
+    }
+
+    @Test
+    void shouldParseSelectionNamesWhateverTheDefaultLocale() {
+        var defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertThat(ShardedHttp2Client.Selection.of("least-in-flight")).isEqualTo(ShardedHttp2Client.Selection.LEAST_IN_FLIGHT);
+            assertThat(ShardedHttp2Client.Selection.of("round-robin")).isEqualTo(ShardedHttp2Client.Selection.ROUND_ROBIN);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void shouldCloseTheShardsBehindAHedgingClientWithTheConfig() {
+        var prefix = "spring.cloud.openfeign.client.config.sharded-test.";
+        var env = new MockEnvironment()
+                .withProperty(prefix + "http2.shards", "3")
+                .withProperty(prefix + "hedging.enabled", "true");
+        var config = new FeignHttp2ClientConfig(env, "sharded-test",
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+        var builder = HttpClient.newBuilder();
+
+        var client = config.feignClient(builder.build(), builder);
+        var shards = ((ShardedHttp2Client) ((HedgingClient) client).delegate()).httpClients();
+        config.destroy();
+
+        assertThat(shards).hasSize(3).allSatisfy(httpClient -> assertThat(httpClient.isTerminated()).isTrue());
+    }
+}
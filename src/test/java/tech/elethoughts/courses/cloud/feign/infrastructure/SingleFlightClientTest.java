@@ -0,0 +1,185 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import feign.FeignException;
+import feign.Request;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringJUnitConfig(classes = SingleFlightClientTest.TestConfig.class)
+class SingleFlightClientTest {
+
+    static final int CALLERS = 20;
+    static final int UPSTREAM_DELAY_MILLIS = 1000;
+
+    @Configuration
+    @EnableFeignClients(defaultConfiguration = FeignClientDefaultsConfig.class,
+            clients = {PokeApiClientDefault.class, PokeApiClientHc5.class, PokeApiClientHttp2.class})
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class TestConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        for (var client : List.of("pokemon-default", "pokemon-hc5", "pokemon-http2")) {
+            registry.add("spring.cloud.openfeign.client.config." + client + ".url", wireMock::baseUrl);
+            registry.add("spring.cloud.openfeign.client.config." + client + ".single-flight.enabled", () -> "true");
+        }
+    }
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    PokeApiClient client(String transport) {
+        return switch (transport) {
+            case "default" -> context.getBean(PokeApiClientDefault.class);
+            case "hc5" -> context.getBean(PokeApiClientHc5.class);
+            default -> context.getBean(PokeApiClientHttp2.class);
+        };
+    }
+
+    String clientName(String transport) {
+        return "pokemon-" + transport;
+    }
+
+    double calls(String transport, String role) {
+        return meterRegistry.get("feign.client.single-flight.calls")
+                .tag("client", clientName(transport)).tag("role", role).counter().count();
+    }
+
+    List<Future<Pokemon>> burst(PokeApiClient client, String name) {
+        var calls = new ArrayList<Future<Pokemon>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                calls.add(executor.submit(() -> client.getByName(name)));
+            }
+        }
+        return calls;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldShareOneUpstreamCallBetweenConcurrentCallers(String transport) throws Exception {
+        var path = "/api/v2/pokemon/burst-" + transport;
+        wireMock.stubFor(get(path).willReturn(okJson("""
+                {"id": 143, "name": "snorlax", "height": 21, "weight": 4600}
+                """).withFixedDelay(UPSTREAM_DELAY_MILLIS)));
+        var leadersBefore = calls(transport, "leader");
+        var followersBefore = calls(transport, "follower");
+
+        var calls = burst(client(transport), "burst-" + transport);
+
+        for (var call : calls) {
+            assertThat(call.get().name()).isEqualTo("snorlax");
+        }
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)));
+        assertThat(calls(transport, "leader") - leadersBefore).isEqualTo(1);
+        assertThat(calls(transport, "follower") - followersBefore).isEqualTo(CALLERS - 1);
+        assertThat(meterRegistry.get("feign.client.single-flight.coalescing.ratio")
+                .tag("client", clientName(transport)).gauge().value()).isPositive();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldPropagateSharedErrorToEveryCaller(String transport) {
+        var path = "/api/v2/pokemon/failing-" + transport;
+        wireMock.stubFor(get(path).willReturn(serverError().withFixedDelay(UPSTREAM_DELAY_MILLIS)));
+
+        var calls = burst(client(transport), "failing-" + transport);
+
+        for (var call : calls) {
+            assertThatThrownBy(call::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(FeignException.InternalServerError.class);
+        }
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "hc5", "http2"})
+    void shouldCallUpstreamAgainOnceTheSharedCallCompleted(String transport) {
+        var path = "/api/v2/pokemon/sequential-" + transport;
+        wireMock.stubFor(get(path).willReturn(okJson("""
+                {"id": 143, "name": "snorlax", "height": 21, "weight": 4600}
+                """)));
+
+        client(transport).getByName("sequential-" + transport);
+        client(transport).getByName("sequential-" + transport);
+
+        wireMock.verify(2, getRequestedFor(urlEqualTo(path)));
+    }
+
+    @Test
+    void shouldReleaseFollowersWhenTheLeaderThrowsAnError() throws Exception {
+        var leaderStarted = new CountDownLatch(1);
+        var followerJoined = new CountDownLatch(1);
+        var client = new SingleFlightClient((request, options) -> {
+            leaderStarted.countDown();
+            try {
+                followerJoined.await();
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AssertionError("leader failed");
+        }, new FeignClientProperties(new MockEnvironment(), "single-flight-test"), new SimpleMeterRegistry());
+        var request = Request.create(Request.HttpMethod.GET, "http://localhost/api/v2/pokemon/snorlax", Map.of(),
+                null, StandardCharsets.UTF_8, null);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var leader = executor.submit(() -> client.execute(request, new Request.Options()));
+            leaderStarted.await();
+            var follower = executor.submit(() -> {
+                followerJoined.countDown();
+                return client.execute(request, new Request.Options());
+            });
+
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        }
+    }
+}
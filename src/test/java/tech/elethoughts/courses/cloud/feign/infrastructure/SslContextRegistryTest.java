@@ -0,0 +1,65 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.net.ssl.SSLContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SslContextRegistryTest {
+
+    final SslContextRegistry registry = new SslContextRegistry();
+    final MockEnvironment env = new MockEnvironment();
+
+    FeignClientProperties client(String name, String... properties) {
+        var prefix = "spring.cloud.openfeign.client.config." + name + ".";
+        env.setProperty(prefix + "tls.trust-store", "classpath:wiremock-truststore.p12");
+        env.setProperty(prefix + "tls.trust-store-password", "changeit");
+        for (int i = 0; i < properties.length; i += 2) {
+            env.setProperty(prefix + properties[i], properties[i + 1]);
+        }
+        return new FeignClientProperties(env, name);
+    }
+
+    @Test
+    void shouldShareContextForSameTrustMaterial() throws Exception {
+        var hc5 = registry.getOrCreate(client("pokemon-hc5"));
+        var http2 = registry.getOrCreate(client("pokemon-http2"));
+
+        assertThat(hc5).isSameAs(http2);
+        assertThat(hc5.getClientSessionContext()).isSameAs(http2.getClientSessionContext());
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCreateSeparateContextForDifferentKeyMaterial() throws Exception {
+        var trustOnly = registry.getOrCreate(client("pokemon-hc5"));
+        var mutualTls = registry.getOrCreate(client("pokemon-mtls",
+                "tls.key-store", "classpath:wiremock-keystore.p12",
+                "tls.key-store-password", "changeit"));
+
+        assertThat(trustOnly).isNotSameAs(mutualTls);
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepLargestSessionCacheSettingsAcrossClients() throws Exception {
+        var sslContext = registry.getOrCreate(client("pokemon-hc5",
+                "tls.session-cache-size", "500",
+                "tls.session-timeout", "10m"));
+        registry.getOrCreate(client("pokemon-http2",
+                "tls.session-cache-size", "100",
+                "tls.session-timeout", "1h"));
+
+        assertThat(sslContext.getClientSessionContext().getSessionCacheSize()).isEqualTo(500);
+        assertThat(sslContext.getClientSessionContext().getSessionTimeout()).isEqualTo(3600);
+    }
+
+    @Test
+    void shouldUseJvmDefaultContextWithoutStores() throws Exception {
+        var properties = new FeignClientProperties(env, "pokemon-default");
+
+        assertThat(registry.getOrCreate(properties)).isSameAs(SSLContext.getDefault());
+    }
+}
@@ -0,0 +1,78 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import feign.Request;
+import feign.Response;
+import feign.codec.DecodeException;
+import org.junit.jupiter.api.Test;
+import tech.elethoughts.courses.cloud.feign.domain.Pokemon;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingJacksonDecoderTest {
+
+    // Shaped like a PokeAPI document: the record's fields are spread among nested subtrees that reuse their names
+    static final String POKEAPI_JSON = """
+            {
+              "abilities": [{"ability": {"name": "static", "url": "https://pokeapi.co/api/v2/ability/9/"}, "is_hidden": false, "slot": 1}],
+              "base_experience": 112,
+              "forms": [{"name": "pikachu", "url": "https://pokeapi.co/api/v2/pokemon-form/25/"}],
+              "height": 4,
+              "id": 25,
+              "moves": [{"move": {"name": "mega-punch"}, "version_group_details": [{"level_learned_at": 0, "weight": 99}]}],
+              "name": "pikachu",
+              "sprites": {"front_default": null, "other": {"home": {"front_shiny": "https://example/25.png"}}},
+              "stats": [{"base_stat": 35, "stat": {"name": "hp"}}],
+              "weight": 60
+            }
+            """;
+
+    final StreamingJacksonDecoder decoder = new StreamingJacksonDecoder((response, type) -> "fallback");
+
+    static Response response(int status, String contentType, String body) {
+        Map<String, Collection<String>> headers = contentType == null ? Map.of() : Map.of("Content-Type", List.of(contentType));
+        return Response.builder()
+                .status(status)
+                .headers(headers)
+                .body(body, StandardCharsets.UTF_8)
+                .request(Request.create(Request.HttpMethod.GET, "https://pokeapi.co/api/v2/pokemon/pikachu",
+                        Map.of(), null, StandardCharsets.UTF_8, null))
+                .build();
+    }
+
+    @Test
+    void shouldDecodeRecordSkippingUnknownSubtrees() throws Exception {
+        var pokemon = decoder.decode(response(200, "application/json; charset=utf-8", POKEAPI_JSON), Pokemon.class);
+
+        assertThat(pokemon).isEqualTo(new Pokemon(25L, "pikachu", 4, 60));
+    }
+
+    @Test
+    void shouldDecodeWithoutContentType() throws Exception {
+        assertThat(decoder.decode(response(200, null, POKEAPI_JSON), Pokemon.class))
+                .isEqualTo(new Pokemon(25L, "pikachu", 4, 60));
+    }
+
+    @Test
+    void shouldDelegateNonJsonResponsesAndStringTargets() throws Exception {
+        assertThat(decoder.decode(response(200, "text/plain", "pikachu"), Pokemon.class)).isEqualTo("fallback");
+        assertThat(decoder.decode(response(200, "application/json", POKEAPI_JSON), String.class)).isEqualTo("fallback");
+    }
+
+    @Test
+    void shouldReturnEmptyValueOnNotFound() throws Exception {
+        assertThat(decoder.decode(response(404, "application/json", "{}"), Pokemon.class)).isNull();
+    }
+
+    @Test
+    void shouldWrapMalformedJsonInDecodeException() {
+        assertThatThrownBy(() -> decoder.decode(response(200, "application/json", "{\"id\": 25, \"name\": "), Pokemon.class))
+                .isInstanceOf(DecodeException.class)
+                .satisfies(e -> assertThat(((DecodeException) e).status()).isEqualTo(200));
+    }
+}
@@ -0,0 +1,100 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class TlsHandshakeMetricsTest {
+
+    @RegisterExtension
+    static WireMockExtension httpsServer = WireMockExtension.newInstance()
+            .options(wireMockConfig()
+                    .dynamicHttpsPort()
+                    .httpDisabled(true)
+                    .keystorePath("src/test/resources/wiremock-keystore.p12")
+                    .keystorePassword("changeit")
+                    .keyManagerPassword("changeit")
+                    .keystoreType("PKCS12"))
+            .build();
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SSLContext sslContext;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        httpsServer.stubFor(get("/api/v2/pokemon/mewtwo")
+                .willReturn(okJson("""
+                        {"id": 150, "name": "mewtwo", "height": 20, "weight": 1220}
+                        """)));
+        var env = new MockEnvironment()
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-tls.tls.trust-store", "classpath:wiremock-truststore.p12")
+                .withProperty("spring.cloud.openfeign.client.config.pokemon-tls.tls.trust-store-password", "changeit");
+        var properties = new FeignClientProperties(env, "pokemon-tls");
+        sslContext = new FeignSslContextFactory(properties, new SslContextRegistry(), meterRegistry).createSslContext();
+    }
+
+    double handshakes(String type) {
+        return meterRegistry.get("feign.client.tls.handshakes").tag("client", "pokemon-tls").tag("type", type).counter().count();
+    }
+
+    @Test
+    void shouldCountFullThenResumedHandshakesOnSockets() throws Exception {
+        fetchOverNewSocket();
+        fetchOverNewSocket();
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+            assertThat(handshakes("full")).isEqualTo(1);
+            assertThat(handshakes("resumed")).isEqualTo(1);
+        });
+        assertThat(meterRegistry.get("feign.client.tls.session.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+        assertThat(meterRegistry.get("feign.client.tls.handshake.duration").tag("type", "full").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountHandshakesOnEngines() throws Exception {
+        try (var client = HttpClient.newBuilder().sslContext(sslContext).build()) {
+            // One connection: TLS 1.3 session tickets received after the handshake are not handshakes
+            for (int i = 0; i < 5; i++) {
+                var response = client.send(HttpRequest.newBuilder(URI.create(
+                        "https://localhost:" + httpsServer.getHttpsPort() + "/api/v2/pokemon/mewtwo")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(response.body()).contains("mewtwo");
+            }
+        }
+
+        assertThat(handshakes("full")).isEqualTo(1);
+        assertThat(handshakes("resumed")).isZero();
+    }
+
+    void fetchOverNewSocket() throws Exception {
+        try (var socket = (SSLSocket) sslContext.getSocketFactory().createSocket("localhost", httpsServer.getHttpsPort())) {
+            socket.startHandshake();
+            socket.getOutputStream().write("""
+                    GET /api/v2/pokemon/mewtwo HTTP/1.1\r
+                    Host: localhost\r
+                    Connection: close\r
+                    \r
+                    """.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            assertThat(new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).contains("mewtwo");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package tech.elethoughts.courses.cloud.feign.infrastructure;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Drives the blocking paths that park the calling thread (HC5 pool lease, retry back-off, HttpURLConnection I/O)
+ * from virtual threads and fails on any {@code jdk.VirtualThreadPinned} event.
+ */
+@SpringJUnitConfig(classes = VirtualThreadPinningTest.TestConfig.class)
+class VirtualThreadPinningTest {
+
+    @Configuration
+    @EnableFeignClients(defaultConfiguration = FeignClientDefaultsConfig.class,
+            clients = {PokeApiClientHc5.class, PokeApiClientDefault.class, PokeApiClientCustomConfig.class})
+    @ImportAutoConfiguration(FeignAutoConfiguration.class)
+    static class TestConfig {
+    }
+
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.cloud.openfeign.client.config.pokemon-hc5.url", wireMock::baseUrl);
+        registry.add("spring.cloud.openfeign.client.config.pokemon-default.url", wireMock::baseUrl);
+        registry.add("spring.cloud.openfeign.client.config.pokemon-custom-config.url", wireMock::baseUrl);
+        // One connection per route: concurrent callers queue in the pool lease
+        registry.add("spring.cloud.openfeign.httpclient.max-connections-per-route", () -> "1");
+    }
+
+    @Autowired
+    PokeApiClientHc5 hc5Client;
+
+    @Autowired
+    PokeApiClientDefault defaultClient;
+
+    @Autowired
+    PokeApiClientCustomConfig customConfigClient;
+
+    @BeforeEach
+    void setUp() {
+        wireMock.stubFor(get("/api/v2/pokemon/pikachu")
+                .willReturn(okJson("""
+                        {"id": 25, "name": "pikachu", "height": 4, "weight": 60}
+                        """).withFixedDelay(20)));
+        wireMock.stubFor(get("/api/v2/pokemon/missingno")
+                .willReturn(serviceUnavailable().withHeader("Retry-After", "0")));
+    }
+
+    @Test
+    void shouldNotPinWhileWaitingForPooledConnection() {
+        assertThat(pinnedStacks(() -> hc5Client.getByName("pikachu"))).isEmpty();
+    }
+
+    @Test
+    void shouldNotPinOnHttpUrlConnection() {
+        assertThat(pinnedStacks(() -> defaultClient.getByName("pikachu"))).isEmpty();
+    }
+
+    @Test
+    void shouldNotPinDuringRetryBackoff() {
+        assertThat(pinnedStacks(() -> assertThatThrownBy(() -> customConfigClient.getByName("missingno"))))
+                .isEmpty();
+        wireMock.verify(moreThanOrExactly(16 * 2), getRequestedFor(urlEqualTo("/api/v2/pokemon/missingno")));
+    }
+
+    private List<String> pinnedStacks(Runnable call) {
+        var pinned = new CopyOnWriteArrayList<RecordedEvent>();
+        try (var recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            List<Future<?>> calls;
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                calls = IntStream.range(0, 16).<Future<?>>mapToObj(_ -> executor.submit(call)).toList();
+            }
+            recording.stop();
+            assertThat(calls).allSatisfy(f -> assertThat(f.state()).isEqualTo(Future.State.SUCCESS));
+        }
+        return pinned.stream()
+                .map(event -> event.getStackTrace().getFrames().stream()
+                        .limit(8)
+                        .map(RecordedFrame::getMethod)
+                        .map(method -> method.getType().getName() + "." + method.getName())
+                        .collect(Collectors.joining(" < ")))
+                .toList();
+    }
+}